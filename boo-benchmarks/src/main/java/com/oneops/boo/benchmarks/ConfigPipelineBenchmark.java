@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oneops.boo.BooConfigInterpolator;
+import com.oneops.boo.BooYamlReader;
+import com.oneops.boo.yaml.EnvironmentBean;
+import com.oneops.boo.yaml.PlatformBean;
+import com.oneops.boo.yaml.ScaleBean;
+import com.oneops.boo.yaml.Yaml;
+import com.oneops.boo.yaml.helper.EnvironmentBeanHelper;
+import com.oneops.boo.yaml.helper.PlatformBeanHelper;
+
+/**
+ * Every step between a Boo YAML template on disk and the model the workflow runs on, over
+ * synthetic templates of 10 to 10,000 platforms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigPipelineBenchmark {
+
+  /** The number of platforms in the template. */
+  @Param({"10", "100", "1000", "10000"})
+  public int platforms;
+
+  private final BooConfigInterpolator interpolator = new BooConfigInterpolator();
+  private final BooYamlReader reader = new BooYamlReader();
+
+  private Map<String, String> profile;
+  private String template;
+  private String interpolated;
+  private Yaml yaml;
+
+  /**
+   * Prepares the input of every stage from the output of the previous one.
+   *
+   * @throws IOException if the template does not parse
+   */
+  @Setup
+  public void setup() throws IOException {
+    profile = SyntheticTemplates.profile();
+    template = SyntheticTemplates.template(platforms);
+    interpolated = interpolator.interpolate(template, profile);
+    yaml = reader.read(interpolated);
+  }
+
+  @Benchmark
+  public String interpolate() throws IOException {
+    return interpolator.interpolate(template, profile);
+  }
+
+  @Benchmark
+  public Yaml read() throws IOException {
+    return reader.read(interpolated);
+  }
+
+  @Benchmark
+  public List<PlatformBean> getPlatforms() {
+    return PlatformBeanHelper.getPlatforms(yaml.getPlatforms());
+  }
+
+  @Benchmark
+  public List<EnvironmentBean> getEnvironments() {
+    return EnvironmentBeanHelper.getEnvironments(yaml.getEnvironments());
+  }
+
+  @Benchmark
+  public List<ScaleBean> getScales() {
+    return EnvironmentBeanHelper.getScales(yaml.getScale());
+  }
+
+  /**
+   * Yaml builds its environment list once, so measure it on a fresh instance every time.
+   *
+   * @return the environment list
+   */
+  @Benchmark
+  public List<EnvironmentBean> getEnvironmentList() {
+    Yaml fresh = new Yaml();
+    fresh.setBoo(yaml.getBoo());
+    fresh.setEnvironments(yaml.getEnvironments());
+    return fresh.getEnvironmentList();
+  }
+}
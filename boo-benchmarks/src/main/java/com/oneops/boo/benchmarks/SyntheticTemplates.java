@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates Boo YAML templates of any size. Every platform has a few components, variables and a
+ * global scale entry; every tenth platform is overridden in each environment.
+ */
+public final class SyntheticTemplates {
+
+  /** The number of environments in every template. */
+  public static final int ENVIRONMENTS = 3;
+
+  private SyntheticTemplates() {}
+
+  /**
+   * The ~/.boo/config profile the templates are interpolated with.
+   *
+   * @return the profile values
+   */
+  public static Map<String, String> profile() {
+    Map<String, String> profile = new HashMap<String, String>();
+    profile.put("host", "https://localhost:9090");
+    profile.put("organization", "benchmarks");
+    profile.put("api_key", "api_key");
+    profile.put("email", "boo@localhost");
+    profile.put("cloud", "dev-cloud0");
+    profile.put("clouds", "dev-cloud0, dev-cloud1, dev-cloud2");
+    return profile;
+  }
+
+  /**
+   * Builds a template.
+   *
+   * @param platforms the number of platforms
+   * @return the template, still to be interpolated
+   */
+  public static String template(int platforms) {
+    StringBuilder yaml = new StringBuilder(platforms * 640);
+    yaml.append("boo:\n")
+        .append("  oneops_host: '{{host}}'\n")
+        .append("  organization: '{{organization}}'\n")
+        .append("  api_key: '{{api_key}}'\n")
+        .append("  email: '{{email}}'\n")
+        .append("  ip_output: 'json'\n\n")
+        .append("assembly:\n")
+        .append("  name: 'benchmark-").append(platforms).append("'\n")
+        .append("  auto_gen: false\n\n")
+        .append("variables:\n")
+        .append("  global-0: 'value-0'\n\n")
+        .append("platforms:\n");
+    for (int i = 0; i < platforms; i++) {
+      yaml.append("  platform-").append(i).append(":\n")
+          .append("    deploy_order: ").append(i % 5 + 1).append('\n')
+          .append("    pack: oneops/tomcat\n")
+          .append("    pack_version: '1'\n")
+          .append("    variables:\n")
+          .append("      var-0: 'value-").append(i).append("'\n")
+          .append("      owner: '{{email}}'\n")
+          .append("    encrypted_variables:\n")
+          .append("      secret-0: '{{api_key}}'\n")
+          .append("    components:\n")
+          .append("      compute:\n")
+          .append("        size: M\n")
+          .append("      tomcat:\n")
+          .append("        tomcat:\n")
+          .append("          port: '8080'\n")
+          .append("          clouds: '{{#clouds}}{{.}} {{/clouds}}'\n")
+          .append("      user:\n")
+          .append("        user-boo:\n")
+          .append("          username: 'boo'\n")
+          .append("          sudoer: true\n");
+    }
+    yaml.append("\nscale:\n");
+    for (int i = 0; i < platforms; i++) {
+      yaml.append("  platform-").append(i).append(":\n")
+          .append("    scaling:\n")
+          .append("      compute:\n")
+          .append("        current: '2'\n")
+          .append("        min: '1'\n")
+          .append("        max: '4'\n");
+    }
+    yaml.append("\nenvironments:\n");
+    for (int e = 0; e < ENVIRONMENTS; e++) {
+      yaml.append("  env-").append(e).append(":\n")
+          .append("    profile: 'DEV'\n")
+          .append("    availability: 'redundant'\n")
+          .append("    clouds:\n")
+          .append("      {{cloud}}:\n")
+          .append("        priority: '1'\n")
+          .append("        dpmt_order: '1'\n")
+          .append("        pct_scale: '100'\n")
+          .append("    platforms:\n");
+      for (int i = 0; i < platforms; i += 10) {
+        yaml.append("      platform-").append(i).append(":\n")
+            .append("        auto_healing:\n")
+            .append("          autorepair: true\n")
+            .append("          replace_after_minutes: 60\n")
+            .append("          replace_after_repairs: 4\n")
+            .append("        scale:\n")
+            .append("          compute:\n")
+            .append("            current: '3'\n")
+            .append("        components:\n")
+            .append("          compute:\n")
+            .append("            size: L\n");
+      }
+    }
+    return yaml.toString();
+  }
+}
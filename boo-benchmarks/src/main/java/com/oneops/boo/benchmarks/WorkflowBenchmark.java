@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oneops.api.OOInstance;
+import com.oneops.api.exception.OneOpsClientAPIException;
+import com.oneops.api.resource.model.Deployment;
+import com.oneops.boo.BooConfig;
+import com.oneops.boo.MockOneOpsServer;
+import com.oneops.boo.state.StateStore;
+import com.oneops.boo.workflow.BuildAllPlatforms;
+
+/**
+ * End-to-end {@link BuildAllPlatforms#process(boolean, boolean)} against a {@link MockOneOpsServer},
+ * reporting the wall time and the number of OneOps requests of one create or update.
+ *
+ * <p>
+ * An update runs against the assembly and the local state the create of the same iteration left
+ * behind, so it measures the "nothing changed" path. The mock answers at once, so the pauses that
+ * let a real OneOps settle are turned off; otherwise they would make up most of the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WorkflowBenchmark {
+
+  /** The number of platforms in the assembly. */
+  @Param({"1", "10", "50"})
+  public int platforms;
+
+  /** The latency of every OneOps request, in milliseconds. */
+  @Param({"0", "20"})
+  public long latency;
+
+  /** Whether to create the assembly or update it. */
+  @Param({"create", "update"})
+  public String mode;
+
+  private MockOneOpsServer server;
+  private File template;
+  private File stateDir;
+  private Map<String, String> profile;
+
+  /**
+   * Starts the server and writes the template.
+   *
+   * @throws IOException if the server cannot start
+   */
+  @Setup(Level.Trial)
+  public void startServer() throws IOException {
+    server = new MockOneOpsServer();
+    profile = SyntheticTemplates.profile();
+    profile.put("host", server.getEndpoint());
+    template = File.createTempFile("boo-benchmark", ".yaml");
+    Files.write(template.toPath(),
+        SyntheticTemplates.template(platforms).getBytes(StandardCharsets.UTF_8));
+    stateDir = Files.createTempDirectory("boo-benchmark-state").toFile();
+    System.setProperty(StateStore.STATE_DIR_PROPERTY, stateDir.getAbsolutePath());
+  }
+
+  /**
+   * Starts every iteration from an empty organization, or from a freshly created assembly when
+   * measuring updates.
+   *
+   * @throws Exception if the create fails
+   */
+  @Setup(Level.Iteration)
+  public void prepare() throws Exception {
+    server.clearFaults();
+    server.reset();
+    FileUtils.cleanDirectory(stateDir);
+    if (mode.equals("update")) {
+      workflow().process(false, false);
+    }
+    server.resetCounts();
+    server.setLatency(latency);
+  }
+
+  /**
+   * Stops the server.
+   *
+   * @throws IOException if the temporary files cannot be deleted
+   */
+  @TearDown(Level.Trial)
+  public void stopServer() throws IOException {
+    server.close();
+    Files.deleteIfExists(template.toPath());
+    FileUtils.deleteDirectory(stateDir);
+    System.clearProperty(StateStore.STATE_DIR_PROPERTY);
+  }
+
+  @Benchmark
+  public List<Deployment> process(Requests requests) throws Exception {
+    List<Deployment> deployments = workflow().process(mode.equals("update"), false);
+    requests.requests += server.getRequestCount();
+    return deployments;
+  }
+
+  private BuildAllPlatforms workflow() throws IOException, OneOpsClientAPIException {
+    BooConfig config = new BooConfig(template, profile);
+    OOInstance instance = new OOInstance();
+    instance.setAuthtoken(config.getYaml().getBoo().getApikey());
+    instance.setOrgname(config.getYaml().getBoo().getOrg());
+    instance.setEndpoint(config.getYaml().getBoo().getHost());
+    instance.setGzipEnabled(config.getYaml().getBoo().isGzipEnabled());
+    BuildAllPlatforms workflow = new BuildAllPlatforms(instance, config, null);
+    workflow.setSettleMillis(0);
+    return workflow;
+  }
+
+  /**
+   * The OneOps requests of one run, reported next to its time.
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Requests {
+
+    /** The request count. */
+    public long requests;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      requests = 0;
+    }
+  }
+}
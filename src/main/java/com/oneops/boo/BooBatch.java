@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+
+import com.oneops.boo.utils.BooUtils;
+import com.oneops.boo.utils.ProgressRenderer;
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * Runs one command for many Boo YAML files, given by --batch DIR and/or several -f, in this JVM.
+ * Each file gets its own {@link BooCli}, so its own config, options and workflow; the HTTP stack,
+ * the cloud ids, the log and the stats are shared. At most --parallel files run at the same time.
+ */
+public class BooBatch {
+
+  /** The default of --parallel. */
+  public static final int DEFAULT_PARALLEL = 4;
+
+  /** The options that apply to the whole batch rather than to each file. */
+  private static final Set<String> BATCH_OPTIONS = new HashSet<String>(Arrays.asList("batch",
+      "parallel", "config-file", "stats", "stats-file", "trace", "trace-file", "log-json"));
+
+  /** The command line of the batch. */
+  private final CommandLine cmd;
+
+  /** The boo utils. */
+  private final BooUtils booUtils = new BooUtils();
+
+  /**
+   * Instantiates a new batch.
+   *
+   * @param cmd the command line of the batch
+   */
+  public BooBatch(CommandLine cmd) {
+    this.cmd = cmd;
+  }
+
+  /**
+   * Checks whether the command line asks for a batch.
+   *
+   * @param cmd the command line
+   * @return true, with --batch or more than one -f
+   */
+  public static boolean isBatch(CommandLine cmd) {
+    String[] files = cmd.getOptionValues("f");
+    return cmd.hasOption("batch") || (files != null && files.length > 1);
+  }
+
+  /**
+   * Runs the command for every file.
+   *
+   * @return the first non zero exit code in file order, or {@link Constants#EXIT_NORMAL}
+   */
+  public int run() {
+    if (!(cmd.hasOption("c") || cmd.hasOption("u") || cmd.hasOption("s")
+        || (cmd.hasOption("r") && cmd.hasOption("force")))) {
+      System.err.println(Constants.BATCH_COMMAND_ERROR);
+      return Constants.EXIT_WRONG_PRAMETER;
+    }
+    List<File> files = this.getFiles();
+    if (files.isEmpty()) {
+      System.err.println(Constants.BATCH_NO_FILES);
+      return Constants.EXIT_YAML_NOT_FOUND;
+    }
+    int parallel = DEFAULT_PARALLEL;
+    if (cmd.hasOption("parallel")) {
+      try {
+        parallel = BooCli.parseCount(cmd.getOptionValue("parallel"), "--parallel");
+      } catch (IllegalArgumentException e) {
+        System.err.println(e.getMessage());
+        return Constants.EXIT_WRONG_PRAMETER;
+      }
+    }
+    // Several workflows cannot share one status line.
+    String terminal = System.getProperty(ProgressRenderer.TERMINAL_PROPERTY);
+    System.setProperty(ProgressRenderer.TERMINAL_PROPERTY, Boolean.FALSE.toString());
+    List<String> common = this.getCommonArgs();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallel, files.size()));
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    try {
+      for (File file : files) {
+        List<String> args = new ArrayList<String>(common);
+        args.add("-f");
+        args.add(file.getAbsolutePath());
+        results.add(executor.submit(() -> new BooCli().execute(args.toArray(new String[0]))));
+      }
+      int exit = Constants.EXIT_NORMAL;
+      for (int i = 0; i < files.size(); i++) {
+        int code;
+        try {
+          code = results.get(i).get();
+        } catch (ExecutionException e) {
+          System.err.println(e.getCause().getMessage());
+          code = Constants.EXIT_UNKOWN;
+        }
+        LogUtils.info(Constants.BATCH_RESULT, files.get(i).getName(),
+            code == Constants.EXIT_NORMAL ? "ok" : "exit " + code);
+        if (exit == Constants.EXIT_NORMAL) {
+          exit = code;
+        }
+      }
+      return exit;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Constants.EXIT_UNKOWN;
+    } finally {
+      executor.shutdownNow();
+      if (terminal == null) {
+        System.clearProperty(ProgressRenderer.TERMINAL_PROPERTY);
+      } else {
+        System.setProperty(ProgressRenderer.TERMINAL_PROPERTY, terminal);
+      }
+    }
+  }
+
+  /**
+   * Gets the files of the batch: every -f, then the YAML files of --batch, by name.
+   *
+   * @return the files
+   */
+  List<File> getFiles() {
+    List<File> files = new ArrayList<File>();
+    String[] configs = cmd.getOptionValues("f");
+    if (configs != null) {
+      for (String config : configs) {
+        files.add(new File(booUtils.getAbsolutePath(config)));
+      }
+    }
+    if (cmd.hasOption("batch")) {
+      File dir = new File(booUtils.getAbsolutePath(cmd.getOptionValue("batch")));
+      File[] yamls =
+          dir.listFiles((parent, name) -> name.endsWith(".yaml") || name.endsWith(".yml"));
+      if (yamls != null) {
+        Arrays.sort(yamls);
+        files.addAll(Arrays.asList(yamls));
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Gets the arguments every file is run with: all but the batch options.
+   *
+   * @return the arguments
+   */
+  List<String> getCommonArgs() {
+    List<String> args = new ArrayList<String>();
+    for (Option option : cmd.getOptions()) {
+      if (option.getLongOpt() != null && BATCH_OPTIONS.contains(option.getLongOpt())) {
+        continue;
+      }
+      args.add(option.getLongOpt() != null ? "--" + option.getLongOpt() : "-" + option.getOpt());
+      if (option.getValues() != null) {
+        args.addAll(Arrays.asList(option.getValues()));
+      }
+    }
+    args.addAll(cmd.getArgList());
+    return args;
+  }
+}
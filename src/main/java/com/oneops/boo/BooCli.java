@@ -15,6 +15,7 @@ package com.oneops.boo;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -22,7 +23,11 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -41,8 +46,15 @@ import com.oneops.api.OOInstance;
 import com.oneops.api.exception.OneOpsClientAPIException;
 import com.oneops.api.resource.model.Deployment;
 import com.oneops.boo.exception.BooException;
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.stats.RequestStats;
+import com.oneops.boo.stats.Tracer;
 import com.oneops.boo.utils.BooUtils;
+import com.oneops.boo.utils.ListingCache;
 import com.oneops.boo.workflow.BuildAllPlatforms;
+import com.oneops.boo.workflow.Cancellation;
+import com.oneops.boo.workflow.Cancellation.Phase;
+import com.oneops.boo.workflow.DeploymentWatcher;
 import com.oneops.boo.yaml.Constants;
 import com.oneops.boo.yaml.EnvironmentBean;
 import com.oneops.client.OneOpsConfigReader;
@@ -56,13 +68,44 @@ public class BooCli {
   private static final Logger LOG = LoggerFactory.getLogger(BooCli.class);
 
   /** The is quiet. */
-  private static boolean isQuiet = false;
+  private boolean isQuiet = false;
 
   /** The is forced. */
-  private static boolean isForced = false;
+  private boolean isForced = false;
 
   /** The is no deploy. */
-  private static boolean isNoDeploy = false;
+  private boolean isNoDeploy = false;
+
+  /** The is verify. */
+  private boolean isVerify = false;
+
+  /** The is resume. */
+  private boolean isResume = false;
+
+  /** The is no cache. */
+  private boolean isNoCache = false;
+
+  /** The most time --wait waits for the deployments, in milliseconds, or 0 for no limit. */
+  private long waitMillis = 0;
+
+  /** The retries of a failed deployment with --wait-retries. */
+  private int waitRetries = 0;
+
+  /** Whether the HTTP stack is set up. */
+  private static boolean isHttpReady = false;
+
+  /** Caches the OneOps listings, once the HTTP stack is set up. */
+  private static ListingCache listingCache;
+
+  /** How long an abort waits for the OneOps requests in flight. */
+  private static final long ABORT_DRAIN_MILLIS = 2000;
+
+  /** The aborts of the commands running in this JVM, e.g. the configs of a batch. */
+  private static final Set<Runnable> ABORTS = ConcurrentHashMap.newKeySet();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(BooCli::abortAll, "boo-abort"));
+  }
 
   /** The Constant YES_NO. */
   private static final String YES_NO =
@@ -71,8 +114,11 @@ public class BooCli {
   /** The config file. */
   private File configFile;
 
-  /** The flow. */
-  private BuildAllPlatforms flow;
+  /** The flow, also read by the shutdown hook. */
+  private volatile BuildAllPlatforms flow;
+
+  /** Cancels the command on Ctrl-C. */
+  private final Cancellation cancellation = new Cancellation();
 
   /** The options. */
   private Options options = new Options();
@@ -104,9 +150,28 @@ public class BooCli {
     Option status = Option.builder("s").longOpt("status")
         .desc("Get status of deployments specified by -f").build();
 
+    Option watch = Option.builder().longOpt("watch")
+        .desc("With -s, follow the deployments until all are done and print every change.")
+        .build();
+
+    Option await = Option.builder().longOpt("wait").argName("SECONDS").numberOfArgs(1)
+        .optionalArg(Boolean.TRUE)
+        .desc("With -c or -u, wait until the deployments are done, at most SECONDS if given.")
+        .build();
+    Option awaitRetries = Option.builder().longOpt("wait-retries").argName("N").hasArg()
+        .desc("With --wait, retry a failed deployment up to N times.").build();
+
     Option config = Option.builder("f").longOpt("config-file").argName("FILE").hasArg()
         .desc("Use specified Boo YAML file").build();
 
+    Option batch = Option.builder().longOpt("batch").argName("DIR").hasArg()
+        .desc("Run the command for every Boo YAML file in DIR, and every -f, in one process.")
+        .build();
+    Option parallel = Option.builder().longOpt("parallel").argName("N").hasArg()
+        .desc("With --batch or several -f, run at most N files at a time. Default is "
+            + BooBatch.DEFAULT_PARALLEL + ".")
+        .build();
+
     Option cleanup = Option.builder("r").longOpt("remove")
         .desc("Remove all deployed configurations specified by -f").build();
     Option list = Option.builder("l").longOpt("list").numberOfArgs(2).optionalArg(Boolean.TRUE)
@@ -117,6 +182,45 @@ public class BooCli {
     Option nodeploy =
         Option.builder().longOpt("no-deploy").desc("Create assembly without deployments").build();
 
+    Option verify = Option.builder().longOpt("verify")
+        .desc("Ignore the local state cache and compare every platform with OneOps for -u.")
+        .build();
+
+    Option resume = Option.builder().longOpt("resume")
+        .desc("Resume the failed -c or -u run of the same YAML, skipping the steps it completed.")
+        .build();
+
+    Option noCache = Option.builder().longOpt("no-cache")
+        .desc("Always fetch the assembly, environment and platform listings from OneOps.").build();
+
+    Option cancelOnAbort = Option.builder().longOpt("cancel-on-abort")
+        .desc("When aborted, e.g. by Ctrl-C, cancel the deployments this run started.").build();
+
+    Option timeout = Option.builder().longOpt("timeout").argName("SECONDS").hasArg()
+        .desc("Stop the command with exit code 11 once it runs longer than SECONDS.").build();
+
+    Option phaseTimeout = Option.builder().longOpt("phase-timeout")
+        .argName("PHASE=SECONDS[,PHASE=SECONDS]").hasArg()
+        .desc("Stop the command with exit code 11 once a phase runs longer than its budget. "
+            + "The phases are create, update, deploy, wait and remove.")
+        .build();
+
+    Option stats = Option.builder().longOpt("stats")
+        .desc("Print call counts and latencies of the OneOps requests when done.").build();
+
+    Option statsFile = Option.builder().longOpt("stats-file").argName("FILE").hasArg()
+        .desc("Write call counts and latencies of the OneOps requests to FILE as JSON.").build();
+
+    Option trace = Option.builder().longOpt("trace")
+        .desc("Print the time spent in each phase and the critical path when done.").build();
+
+    Option traceFile = Option.builder().longOpt("trace-file").argName("FILE").hasArg()
+        .desc("Write the phases and OneOps requests to FILE in the Chrome trace event format.")
+        .build();
+
+    Option logJson = Option.builder().longOpt("log-json").argName("FILE").hasArg()
+        .desc("Also write every log message to FILE as JSON lines.").build();
+
     Option getIps = Option.builder().longOpt("get-ips").argName("environment> <compute-class")
         .desc("Get IPs of deployed nodes specified by -f; Args are optional.").build();
     getIps.setOptionalArg(true);
@@ -152,9 +256,14 @@ public class BooCli {
 
     options.addOption(help);
     options.addOption(config);
+    options.addOption(batch);
+    options.addOption(parallel);
     options.addOption(create);
     options.addOption(update);
     options.addOption(status);
+    options.addOption(watch);
+    options.addOption(await);
+    options.addOption(awaitRetries);
     options.addOption(list);
     options.addOption(cleanup);
     options.addOption(getIps);
@@ -162,6 +271,17 @@ public class BooCli {
     options.addOption(quiet);
     options.addOption(force);
     options.addOption(nodeploy);
+    options.addOption(verify);
+    options.addOption(resume);
+    options.addOption(noCache);
+    options.addOption(cancelOnAbort);
+    options.addOption(timeout);
+    options.addOption(phaseTimeout);
+    options.addOption(stats);
+    options.addOption(statsFile);
+    options.addOption(trace);
+    options.addOption(traceFile);
+    options.addOption(logJson);
     options.addOption(assembly);
     options.addOption(action);
     options.addOption(procedureArguments);
@@ -172,8 +292,18 @@ public class BooCli {
     options.addOption(profile);
   }
 
-  static {
-    RestAssured.useRelaxedHTTPSValidation();
+  /**
+   * Sets up the HTTP stack on first use only, so that -h, -v and argument errors do not load
+   * RestAssured and Groovy.
+   */
+  private static synchronized void initHttp() {
+    if (!isHttpReady) {
+      RestAssured.useRelaxedHTTPSValidation();
+      listingCache = new ListingCache(ListingCache.DEFAULT_TTL_MILLIS,
+          ListingCache.DEFAULT_MAX_BYTES, ListingCache.defaultDir());
+      RestAssured.filters(listingCache);
+      isHttpReady = true;
+    }
   }
 
   /**
@@ -208,6 +338,8 @@ public class BooCli {
    * @param assembly the assembly
    */
   public void initOo(BooConfig config, String assembly, String comment) {
+    initHttp();
+    listingCache.setEnabled(!isNoCache);
     OOInstance oo = injector.getInstance(OOInstance.class);
     oo.setGzipEnabled(config.getYaml().getBoo().isGzipEnabled());
     try {
@@ -215,6 +347,11 @@ public class BooCli {
         config.getYaml().getAssembly().setName(assembly);
       }
       flow = new BuildAllPlatforms(oo, config, comment);
+      flow.setQuiet(isQuiet);
+      flow.setNoDeploy(isNoDeploy);
+      flow.setVerify(isVerify);
+      flow.setResume(isResume);
+      flow.setCancellation(cancellation);
     } catch (OneOpsClientAPIException e) {
       System.err.println("Init failed with " + e.getMessage());
     }
@@ -231,11 +368,212 @@ public class BooCli {
   public int parse(String[] arg) throws ParseException, BooException, OneOpsClientAPIException {
     CommandLineParser parser = new DefaultParser();
     int exit = 0;
+    CommandLine cmd = null;
     // CommandLineParser parser = new GnuParser();
+    try {
+      cmd = parser.parse(options, arg);
+      LogUtils.setConsole(!cmd.hasOption("quiet"));
+      Tracer.setEnabled(cmd.hasOption("trace") || cmd.hasOption("trace-file"));
+      if (cmd.hasOption("log-json")) {
+        String logFile = cmd.getOptionValue("log-json");
+        try {
+          LogUtils.setJsonFile(new File(booUtils.getAbsolutePath(logFile)));
+        } catch (IOException e) {
+          System.err.printf(Constants.LOG_FILE_ERROR, logFile, e.getMessage());
+          System.err.println();
+        }
+      }
+      if (BooBatch.isBatch(cmd)) {
+        exit = new BooBatch(cmd).run();
+      } else {
+        exit = this.execute(cmd);
+      }
+    } catch (ParseException e) {
+      exit = Constants.EXIT_PARSE_ERROR;
+    } finally {
+      LogUtils.close();
+      if (cmd != null) {
+        this.reportStats(cmd.hasOption("stats"), cmd.getOptionValue("stats-file"));
+        this.reportTrace(cmd.hasOption("trace"), cmd.getOptionValue("trace-file"));
+      }
+    }
+    return exit;
+  }
+
+  /**
+   * Parses the options of one config, e.g. one of a batch, and runs the command.
+   *
+   * @param arg the arg
+   * @return the exit code
+   * @throws ParseException the parse exception
+   */
+  int execute(String[] arg) throws ParseException {
+    return this.execute(new DefaultParser().parse(options, arg));
+  }
+
+  /**
+   * Runs the command of one config. On Ctrl-C, the command stops calling OneOps and its waits end;
+   * the requests in flight get a moment to end before the JVM exits.
+   *
+   * @param cmd the parsed command line
+   * @return the exit code
+   */
+  private int execute(CommandLine cmd) {
+    boolean cancelDeployments = cmd.hasOption("cancel-on-abort");
+    try {
+      this.setDeadlines(cmd);
+      this.setWait(cmd);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      return Constants.EXIT_WRONG_PRAMETER;
+    }
+    Runnable abort = () -> this.abort(cancelDeployments);
+    ABORTS.add(abort);
+    cancellation.attach(Thread.currentThread());
+    try {
+      return this.executeCommand(cmd);
+    } finally {
+      // The caller prints next, e.g. the stats or the result of a batch.
+      LogUtils.flush();
+      cancellation.detach(Thread.currentThread());
+      cancellation.close();
+      // Clear the interrupt of a cancel, the thread may run more commands.
+      Thread.interrupted();
+      ABORTS.remove(abort);
+      if (cancelDeployments && cancellation.getExitCode() == Constants.EXIT_TIMEOUT
+          && cancellation.isCanceled() && flow != null) {
+        flow.abort(true, ABORT_DRAIN_MILLIS);
+      }
+    }
+  }
+
+  /**
+   * Sets the --timeout of the command and the --phase-timeout budgets.
+   *
+   * @param cmd the command line
+   * @throws IllegalArgumentException if a timeout is not a number of seconds
+   */
+  private void setDeadlines(CommandLine cmd) {
+    if (cmd.hasOption("phase-timeout")) {
+      for (String budget : cmd.getOptionValue("phase-timeout").split(",")) {
+        String[] pair = budget.split("=", 2);
+        if (pair.length != 2) {
+          throw new IllegalArgumentException("Wrong parameters! --phase-timeout PHASE=SECONDS");
+        }
+        cancellation.setBudget(pair[0].trim(),
+            TimeUnit.SECONDS.toMillis(this.parseSeconds(pair[1], "--phase-timeout")));
+      }
+    }
+    if (cmd.hasOption("timeout")) {
+      cancellation.setTimeout(
+          TimeUnit.SECONDS.toMillis(this.parseSeconds(cmd.getOptionValue("timeout"), "--timeout")));
+    }
+  }
+
+  /**
+   * Sets the --wait timeout and the --wait-retries, checked before the command starts.
+   *
+   * @param cmd the command line
+   * @throws IllegalArgumentException if the timeout or the retries are not a positive number
+   */
+  private void setWait(CommandLine cmd) {
+    if (cmd.getOptionValue("wait") != null) {
+      waitMillis =
+          TimeUnit.SECONDS.toMillis(this.parseSeconds(cmd.getOptionValue("wait"), "--wait"));
+    }
+    if (cmd.hasOption("wait-retries")) {
+      waitRetries = parseCount(cmd.getOptionValue("wait-retries"), "--wait-retries");
+    }
+  }
+
+  /**
+   * Parses a positive number of seconds.
+   *
+   * @param value the value
+   * @param option the option, for the error
+   * @return the seconds
+   * @throws IllegalArgumentException if the value is not a positive number
+   */
+  private long parseSeconds(String value, String option) {
+    try {
+      long seconds = Long.parseLong(value.trim());
+      if (seconds > 0) {
+        return seconds;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    throw new IllegalArgumentException(
+        "Wrong parameters! " + option + " needs a number of seconds, not " + value);
+  }
+
+  /**
+   * Parses a positive count.
+   *
+   * @param value the value
+   * @param option the option, for the error
+   * @return the count
+   * @throws IllegalArgumentException if the value is not a positive number
+   */
+  static int parseCount(String value, String option) {
+    try {
+      int count = Integer.parseInt(value.trim());
+      if (count > 0) {
+        return count;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    throw new IllegalArgumentException(
+        "Wrong parameters! " + option + " needs a positive number, not " + value);
+  }
+
+  /**
+   * Aborts the commands running in this JVM as Ctrl-C does, each in its own thread, and waits for
+   * them. The daemon calls it when its client is interrupted or gone.
+   */
+  public static void abortAll() {
+    List<Thread> aborting = new ArrayList<>();
+    for (Runnable abort : ABORTS) {
+      Thread thread = new Thread(abort, "boo-abort");
+      thread.start();
+      aborting.add(thread);
+    }
+    try {
+      for (Thread thread : aborting) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Aborts the command.
+   *
+   * @param cancelDeployments whether to cancel the deployments the command started
+   */
+  private void abort(boolean cancelDeployments) {
+    System.err.println(Constants.ABORTING);
+    BuildAllPlatforms current = flow;
+    if (current == null) {
+      cancellation.cancel();
+    } else {
+      current.abort(cancelDeployments, ABORT_DRAIN_MILLIS);
+    }
+  }
+
+  /**
+   * Runs the command of one config.
+   *
+   * @param cmd the parsed command line
+   * @return the exit code
+   */
+  private int executeCommand(CommandLine cmd) {
+    int exit = 0;
     try {
 
       String assembly = null;
-      CommandLine cmd = parser.parse(options, arg);
       /**
        * Handle command without configuration file dependency first.
        */
@@ -245,14 +583,23 @@ public class BooCli {
       }
 
       if (cmd.hasOption("quiet")) {
-        BooCli.setQuiet(Boolean.TRUE);
+        this.setQuiet(Boolean.TRUE);
       }
 
       if (cmd.hasOption("force")) {
-        BooCli.setForced(Boolean.TRUE);
+        this.setForced(Boolean.TRUE);
       }
       if (cmd.hasOption("no-deploy")) {
-        BooCli.setNoDeploy(Boolean.TRUE);
+        this.setNoDeploy(Boolean.TRUE);
+      }
+      if (cmd.hasOption("verify")) {
+        this.setVerify(Boolean.TRUE);
+      }
+      if (cmd.hasOption("resume")) {
+        this.setResume(Boolean.TRUE);
+      }
+      if (cmd.hasOption("no-cache")) {
+        this.setNoCache(Boolean.TRUE);
       }
 
       if (cmd.hasOption("a")) {
@@ -305,9 +652,9 @@ public class BooCli {
       if (cmd.hasOption("l")) {
         String prefix = cmd.getOptionValue("l");
         if (prefix == null) {
-          this.listFiles(config.getYaml().getAssembly().getName());
+          this.printFiles(config.getYaml().getAssembly().getName(), null);
         } else {
-          this.listFiles(prefix.trim());
+          this.printFiles(prefix.trim(), null);
         }
         return Constants.EXIT_NORMAL;
       }
@@ -316,8 +663,10 @@ public class BooCli {
        */
       if (cmd.hasOption("s")) {
         if (!flow.isAssemblyExist()) {
-          System.err.printf(Constants.NOTFOUND_ERROR, config.getYaml().getAssembly().getName());
+          LogUtils.error(Constants.NOTFOUND_ERROR, config.getYaml().getAssembly().getName());
           return Constants.EXIT_ASSEMBLY_NOT_FOUND;
+        } else if (cmd.hasOption("watch")) {
+          exit = this.watchStatus();
         } else {
           System.out.println(this.getStatus());
         }
@@ -330,25 +679,31 @@ public class BooCli {
           LogUtils.info(Constants.CREATING_ASSEMBLY, config.getYaml().getAssembly().getName());
         }
         this.createPacks(Boolean.FALSE, isNoDeploy);
+        exit = this.awaitDeployments(cmd);
       } else if (cmd.hasOption("u")) {
         if (!config.getYaml().getAssembly().getAutoGen()) {
           if (flow.isAssemblyExist()) {
             this.createPacks(Boolean.TRUE, isNoDeploy);
+            exit = this.awaitDeployments(cmd);
           } else {
-            System.err.printf(Constants.NOTFOUND_ERROR, config.getYaml().getAssembly().getName());
+            LogUtils.error(Constants.NOTFOUND_ERROR, config.getYaml().getAssembly().getName());
           }
         } else {
           List<String> assemblies = this.listFiles(this.config.getYaml().getAssembly().getName());
           for (String asm : assemblies) {
             this.initOo(config, asm, comment);
             this.createPacks(Boolean.TRUE, isNoDeploy);
+            int waited = this.awaitDeployments(cmd);
+            if (exit == Constants.EXIT_NORMAL) {
+              exit = waited;
+            }
           }
         }
       } else if (cmd.hasOption("r")) {
         deleteAssemblies();
       } else if (cmd.hasOption("get-ips")) {
         if (!flow.isAssemblyExist()) {
-          System.err.printf(Constants.NOTFOUND_ERROR, config.getYaml().getAssembly().getName());
+          LogUtils.error(Constants.NOTFOUND_ERROR, config.getYaml().getAssembly().getName());
         } else if (cmd.getOptionValues("get-ips") == null) {
           // if there is no args for get-ips
           getIps0();
@@ -390,12 +745,8 @@ public class BooCli {
             String ins = cmd.getOptionValue("procedure-instances");
             if (ins != null && ins.trim().length() > 0) {
               if (ins.equalsIgnoreCase("list")) {
-                List<String> list = flow.listInstances(args[0], args[1]);
-                if (list != null) {
-                  for (String instance : list) {
-                    System.out.println(instance);
-                  }
-                }
+                flow.forEachInstance(args[0], args[1], args[2],
+                    (name, id, privateIp) -> System.out.println(name));
                 return Constants.EXIT_NORMAL;
               }
               instances = Arrays.asList(ins.split(","));
@@ -417,8 +768,11 @@ public class BooCli {
         System.err.println("Wrong parameters!");
         return Constants.EXIT_WRONG_PRAMETER;
       }
-    } catch (ParseException e) {
-      exit = Constants.EXIT_PARSE_ERROR;
+    } catch (BooExitException e) {
+      exit = e.getCode();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      exit = cancellation.getExitCode();
     } catch (Exception e) {
       exit = Constants.EXIT_UNKOWN;
       e.printStackTrace(new PrintStream(System.err));
@@ -426,6 +780,52 @@ public class BooCli {
     return exit;
   }
 
+  /**
+   * Prints and/or writes the stats of the OneOps requests.
+   *
+   * @param print whether to print the summary
+   * @param file the JSON file, or null
+   */
+  private void reportStats(boolean print, String file) {
+    if (print) {
+      System.out.println();
+      for (String line : RequestStats.summary()) {
+        System.out.println(line);
+      }
+    }
+    if (file != null) {
+      try {
+        RequestStats.writeJson(new File(booUtils.getAbsolutePath(file)));
+      } catch (IOException e) {
+        System.err.printf(Constants.STATS_FILE_ERROR, file, e.getMessage());
+        System.err.println();
+      }
+    }
+  }
+
+  /**
+   * Prints and/or writes the phase trace.
+   *
+   * @param print whether to print the phases and the critical path
+   * @param file the Chrome trace file, or null
+   */
+  private void reportTrace(boolean print, String file) {
+    if (print) {
+      System.out.println();
+      for (String line : Tracer.report()) {
+        System.out.println(line);
+      }
+    }
+    if (file != null) {
+      try {
+        Tracer.writeChromeTrace(new File(booUtils.getAbsolutePath(file)));
+      } catch (IOException e) {
+        System.err.printf(Constants.TRACE_FILE_ERROR, file, e.getMessage());
+        System.err.println();
+      }
+    }
+  }
+
   public List<Deployment> deleteAssemblies() {
     List<String> assemblies;
     if (config.getYaml().getAssembly().getAutoGen()) {
@@ -437,7 +837,9 @@ public class BooCli {
         assemblies.add(asb);
       }
     }
-    return this.cleanup(assemblies);
+    try (Phase phase = cancellation.phase("remove")) {
+      return this.cleanup(assemblies);
+    }
   }
 
   /**
@@ -455,12 +857,12 @@ public class BooCli {
     int returnCode = 0;
     Long procedureId = null;
     try {
-      System.out.println(Constants.PROCEDURE_RUNNING);
+      LogUtils.info(Constants.PROCEDURE_RUNNING);
       procedureId = flow.executeAction(envName, platformName, componentName, actionName, arglist,
           instanceList, rollAt);
 
     } catch (OneOpsClientAPIException e) {
-      System.err.println(e.getMessage());
+      LogUtils.error(Constants.PROCEDURE_FAILED, e.getMessage());
       returnCode = Constants.EXIT_CLIENT;
     }
     if (procedureId != null) {
@@ -469,19 +871,15 @@ public class BooCli {
         while (procStatus != null
             && (procStatus.equalsIgnoreCase("active") || procStatus.equalsIgnoreCase("pending"))) {
           procStatus = flow.getProcedureStatus(envName, procedureId);
-          try {
-            Thread.sleep(3000);
-          } catch (InterruptedException e) {
-            // Ignore
-          }
+          cancellation.sleep(TimeUnit.SECONDS.toMillis(3));
         }
       } catch (OneOpsClientAPIException e) {
         // Ignore
       }
       if (procStatus.equalsIgnoreCase("complete")) {
-        System.out.println(Constants.SUCCEED);
+        LogUtils.info(Constants.SUCCEED);
       } else {
-        System.err.println(Constants.PROCEDURE_NOT_COMPLETE);
+        LogUtils.error(Constants.PROCEDURE_NOT_COMPLETE);
         returnCode = Constants.EXIT_NOT_COMPLETE;
       }
     }
@@ -496,6 +894,7 @@ public class BooCli {
    */
   @SuppressWarnings("resource")
   private String userInput(String msg) {
+    LogUtils.flush();
     System.out.println(msg);
     Scanner inputReader = new Scanner(System.in);
     String input = inputReader.nextLine();
@@ -516,7 +915,7 @@ public class BooCli {
           System.out.println("Platform name: " + pname);
           for (String cname : computes) {
             System.out.println("Compute name: " + cname);
-            System.out.printf(getIps(eb.getEnvName(), pname, cname));
+            this.printIps(eb.getEnvName(), pname, cname);
           }
         }
     }
@@ -546,7 +945,7 @@ public class BooCli {
           System.out.println("Platform name: " + pname);
           for (String cname : computes) {
             System.out.println("Compute name: " + cname);
-            System.out.printf(getIps(eb.getEnvName(), pname, cname));
+            this.printIps(eb.getEnvName(), pname, cname);
           }
         }
     } else {
@@ -579,7 +978,7 @@ public class BooCli {
           for (String pname : platforms.keySet()) {
             System.out.println("Platform name: " + pname);
             System.out.println("Compute name: " + componentName);
-            System.out.printf(getIps(inputEnv, pname, componentName));
+            this.printIps(inputEnv, pname, componentName);
           }
           return;
         }
@@ -591,19 +990,17 @@ public class BooCli {
   }
 
   /**
-   * Gets the ips.
+   * Prints the ips.
    *
    * @param platformName the platform name
    * @param componentName the component name
-   * @return the ips
    */
-  private String getIps(String envName, String platformName, String componentName) {
+  private void printIps(String envName, String platformName, String componentName) {
     try {
-      return flow.printIps(envName, platformName, componentName);
+      flow.printIps(envName, platformName, componentName, System.out);
     } catch (OneOpsClientAPIException e) {
       e.printStackTrace();
     }
-    return null;
   }
 
   /**
@@ -662,18 +1059,28 @@ public class BooCli {
    * @return the list
    */
   private List<String> listFiles(String prefix) {
+    List<String> assemblies = new ArrayList<String>();
+    this.printFiles(prefix, assemblies::add);
+    return assemblies;
+  }
+
+  /**
+   * Prints the assemblies of a prefix as they are matched.
+   *
+   * @param prefix the prefix
+   * @param action also gets each assembly, or null
+   */
+  private void printFiles(String prefix, Consumer<String> action) {
     if (prefix == null || prefix.trim().length() == 0) {
       System.err.println(Constants.ASSEMBLY_PREFIX_ERROR);
-      System.exit(1);
+      throw new BooExitException(1);
     }
-    List<String> assemblies = flow.getAllAutoGenAssemblies(prefix);
-    for (String assembly : assemblies) {
-      if (assembly != null) {
-        System.out.println(assembly);
+    flow.forEachAutoGenAssembly(prefix, assembly -> {
+      System.out.println(assembly);
+      if (action != null) {
+        action.accept(assembly);
       }
-
-    }
-    return assemblies;
+    });
   }
 
   /**
@@ -725,7 +1132,7 @@ public class BooCli {
    */
   public List<Deployment> cleanup(List<String> assemblies) {
     if (assemblies.size() == 0) {
-      System.out.println("There is no instance to remove");
+      LogUtils.info(Constants.NO_ASSEMBLY_TO_REMOVE);
       return null;
     }
     if (isForced == false) {
@@ -771,12 +1178,67 @@ public class BooCli {
     return flow.getStatus();
   }
 
+  /**
+   * Follows the deployments of all environments until each one is done.
+   *
+   * @return the exit code
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public int watchStatus() throws InterruptedException {
+    List<String> envs = new ArrayList<String>();
+    for (EnvironmentBean eb : config.getYaml().getEnvironmentList()) {
+      envs.add(eb.getEnvName());
+    }
+    LogUtils.flush();
+    try (Phase phase = cancellation.phase("wait")) {
+      return new DeploymentWatcher(envs, flow::getLatestDeploymentState, System.out).watch();
+    }
+  }
+
+  /**
+   * With --wait, follows the deployments the run started until each one is done, retrying failed
+   * ones with --wait-retries, and prints how each one ended.
+   *
+   * @param cmd the command line
+   * @return the exit code
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private int awaitDeployments(CommandLine cmd) throws InterruptedException {
+    if (!cmd.hasOption("wait") || isNoDeploy) {
+      return Constants.EXIT_NORMAL;
+    }
+    // The environments the run skipped, e.g. with an active deployment, are not this run's.
+    Map<String, Long> started = flow.getDeployments();
+    List<String> envs = new ArrayList<String>();
+    for (EnvironmentBean eb : config.getYaml().getEnvironmentList()) {
+      if (started.containsKey(eb.getEnvName())) {
+        envs.add(eb.getEnvName());
+      }
+    }
+    DeploymentWatcher watcher = new DeploymentWatcher(envs,
+        env -> flow.getDeploymentState(env, started.get(env)), System.out);
+    if (waitRetries > 0) {
+      watcher.setRetry(env -> flow.retryDeployment(env) != null, waitRetries);
+    }
+    int exit;
+    LogUtils.flush();
+    try (Phase phase = cancellation.phase("wait")) {
+      exit = watcher.watch(waitMillis);
+    }
+    Map<String, Long> durations = watcher.getDurations();
+    for (Map.Entry<String, String> state : watcher.getStates().entrySet()) {
+      LogUtils.info(Constants.WAIT_RESULT, state.getKey(), state.getValue(),
+          TimeUnit.MILLISECONDS.toSeconds(durations.get(state.getKey())));
+    }
+    return exit;
+  }
+
   /**
    * Checks if is quiet.
    *
    * @return true, if is quiet
    */
-  public static boolean isQuiet() {
+  public boolean isQuiet() {
     return isQuiet;
   }
 
@@ -785,8 +1247,8 @@ public class BooCli {
    *
    * @param isQuiet the new quiet
    */
-  public static void setQuiet(boolean isQuiet) {
-    BooCli.isQuiet = isQuiet;
+  public void setQuiet(boolean isQuiet) {
+    this.isQuiet = isQuiet;
   }
 
   /**
@@ -794,8 +1256,17 @@ public class BooCli {
    *
    * @param isForced the new forced
    */
-  public static void setForced(boolean isForced) {
-    BooCli.isForced = isForced;
+  public void setForced(boolean isForced) {
+    this.isForced = isForced;
+  }
+
+  /**
+   * Checks if is forced.
+   *
+   * @return true, if is forced
+   */
+  public boolean isForced() {
+    return isForced;
   }
 
   /**
@@ -803,8 +1274,8 @@ public class BooCli {
    *
    * @param isNoDeploy the new no deploy
    */
-  public static void setNoDeploy(boolean isNoDeploy) {
-    BooCli.isNoDeploy = isNoDeploy;
+  public void setNoDeploy(boolean isNoDeploy) {
+    this.isNoDeploy = isNoDeploy;
   }
 
   /**
@@ -812,9 +1283,63 @@ public class BooCli {
    *
    * @return true, if is no deploy
    */
-  public static boolean isNoDeploy() {
+  public boolean isNoDeploy() {
     return isNoDeploy;
   }
+
+  /**
+   * Sets the verify.
+   *
+   * @param isVerify the new verify
+   */
+  public void setVerify(boolean isVerify) {
+    this.isVerify = isVerify;
+  }
+
+  /**
+   * Checks if the local state cache must be ignored.
+   *
+   * @return true, if is verify
+   */
+  public boolean isVerify() {
+    return isVerify;
+  }
+
+  /**
+   * Sets the resume.
+   *
+   * @param isResume the new resume
+   */
+  public void setResume(boolean isResume) {
+    this.isResume = isResume;
+  }
+
+  /**
+   * Checks if the failed run of the same YAML must be resumed.
+   *
+   * @return true, if is resume
+   */
+  public boolean isResume() {
+    return isResume;
+  }
+
+  /**
+   * Sets the no cache.
+   *
+   * @param isNoCache the new no cache
+   */
+  public void setNoCache(boolean isNoCache) {
+    this.isNoCache = isNoCache;
+  }
+
+  /**
+   * Checks if the listings must always be fetched from OneOps.
+   *
+   * @return true, if is no cache
+   */
+  public boolean isNoCache() {
+    return isNoCache;
+  }
   
   /**
    *  Creates platforms if the assembly does not exist. Updates the platform/components if assembly already exists
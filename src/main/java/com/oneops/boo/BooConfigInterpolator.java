@@ -22,6 +22,7 @@ import com.github.mustachejava.util.Wrapper;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
+import com.oneops.boo.utils.BooUtils;
 import com.oneops.client.OneOpsConfigReader;
 import org.apache.commons.io.FileUtils;
 
@@ -34,9 +35,9 @@ import java.util.Map;
 public class BooConfigInterpolator {
 
   private static final String HOME = System.getProperty("user.home");
-  private static final String WORK = System.getProperty("user.dir");
   private final static Splitter splitter = Splitter.on(",").omitEmptyStrings().trimResults();
   private final OneOpsConfigReader iniReader;
+  private final BooUtils booUtils = new BooUtils();
 
   public BooConfigInterpolator() {
     iniReader = new OneOpsConfigReader();
@@ -170,8 +171,10 @@ public class BooConfigInterpolator {
     } else if (path.startsWith("@")) {
       path = path.substring(1);
     } else if (path.startsWith("./")) {
-      path = path.replace("./", String.format("%s%s", WORK, File.separator));
+      path = path.replace("./", String.format("%s%s", System.getProperty("user.dir"), File.separator));
     }
+    // Relative to the directory of the command, which the daemon does not run in
+    path = booUtils.getAbsolutePath(path);
     try {
       final String contents =  keepNewlines ? readFileToString(new File(path)) : FileUtils.readFileToString(new File(path), StandardCharsets.UTF_8);
       if (numWhitespaceToBePrepend > 0) {
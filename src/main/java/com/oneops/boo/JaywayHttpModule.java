@@ -36,9 +36,6 @@ public class JaywayHttpModule extends AbstractModule {
   /** The log. */
   private static Logger LOG = LoggerFactory.getLogger(JaywayHttpModule.class);
 
-  /** The client. */
-  private static BooConfig CLIENT = null;
-
   /** The yaml. */
   private File yaml;
 
@@ -99,32 +96,22 @@ public class JaywayHttpModule extends AbstractModule {
   @Singleton
   BooConfig getClientConfig()
       throws JsonParseException, JsonMappingException, FileNotFoundException, IOException {
-    // test
-    if (CLIENT == null) {
-      if (variables != null) {
-        CLIENT = new BooConfig(this.yaml, variables);
-      } else {
-        CLIENT = new BooConfig(this.yaml, this.profile);
-      }
+    // One per injector, so that several configs can live in one JVM.
+    if (variables != null) {
+      return new BooConfig(this.yaml, variables);
     }
-
-    return CLIENT;
+    return new BooConfig(this.yaml, this.profile);
   }
 
   /**
    * Gets the OO instance.
    *
+   * @param client the config of this injector
    * @return the OO instance
-   * @throws JsonParseException the json parse exception
-   * @throws JsonMappingException the json mapping exception
-   * @throws FileNotFoundException the file not found exception
-   * @throws IOException Signals that an I/O exception has occurred.
    */
   @Provides
-  OOInstance getOoInstance()
-      throws JsonParseException, JsonMappingException, FileNotFoundException, IOException {
+  OOInstance getOoInstance(BooConfig client) {
     OOInstance instance = new OOInstance();
-    BooConfig client = this.getClientConfig();
     instance.setAuthtoken(client.getYaml().getBoo().getApikey());
     instance.setOrgname(client.getYaml().getBoo().getOrg());
     instance.setEndpoint(client.getYaml().getBoo().getHost());
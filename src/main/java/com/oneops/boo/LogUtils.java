@@ -13,12 +13,24 @@
  */
 package com.oneops.boo;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import com.oneops.boo.utils.EventLogger;
 
 /**
- * Control the logs.
+ * Control the logs. Messages are put on a ring buffer and printed by a single writer thread, see
+ * {@link EventLogger}, so the parallel workflow threads do not serialize on the console.
  */
 public class LogUtils {
 
+  /** The logger. */
+  private static final EventLogger LOGGER =
+      new EventLogger(System.out, System.err, EventLogger.CAPACITY);
+
   /**
    * Info.
    *
@@ -26,10 +38,7 @@ public class LogUtils {
    * @param arg the arg
    */
   public static void info(String msg, Object... arg) {
-    if (!BooCli.isQuiet()) {
-      System.out.printf(msg, arg);
-      System.out.println();
-    }
+    LOGGER.log(false, msg, arg);
   }
 
   /**
@@ -39,10 +48,41 @@ public class LogUtils {
    * @param arg the arg
    */
   public static void error(String msg, Object... arg) {
-    if (!BooCli.isQuiet()) {
-      System.err.printf(msg, arg);
-      System.err.println();
-    }
+    LOGGER.log(true, msg, arg);
+  }
+
+  /**
+   * Sets whether to print the messages, e.g. not with --quiet. Nothing is formatted when they are
+   * neither printed nor written as JSON.
+   *
+   * @param console whether to print the messages
+   */
+  public static void setConsole(boolean console) {
+    LOGGER.setConsole(console);
+  }
+
+  /**
+   * Also writes every message to a file as JSON lines, for CI.
+   *
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void setJsonFile(File file) throws IOException {
+    LOGGER.setJson(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Waits until the messages logged so far are printed, e.g. before printing directly.
+   */
+  public static void flush() {
+    LOGGER.flush(1000);
+  }
+
+  /**
+   * Writes the pending messages and closes the JSON lines file.
+   */
+  public static void close() {
+    LOGGER.close();
   }
 
 }
@@ -13,20 +13,49 @@
  */
 package com.oneops.boo;
 
+import java.io.IOException;
+
 import org.apache.commons.cli.ParseException;
 
 import com.oneops.api.exception.OneOpsClientAPIException;
+import com.oneops.boo.daemon.BooDaemon;
+import com.oneops.boo.daemon.DaemonClient;
 import com.oneops.boo.exception.BooException;
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.stats.RequestStats;
+import com.oneops.boo.stats.Tracer;
 import com.oneops.boo.yaml.Constants;
 
 public class Main {
 
   /**
-   * The main method.
+   * The main method. With BOO_DAEMON set, the command runs in the daemon started by 'boo daemon',
+   * or here if none is running.
    *
    * @param args the arguments
    */
   public static void main(String[] args) {
+    int exit;
+    if (args.length > 0 && BooDaemon.DAEMON_COMMAND.equals(args[0])) {
+      exit = daemon(args);
+    } else {
+      Integer remote = null;
+      if (System.getenv(DaemonClient.ENV_VARIABLE) != null) {
+        remote = DaemonClient.run(BooDaemon.defaultPortFile(), args, System.in, System.out,
+            System.err);
+      }
+      exit = remote != null ? remote : run(args);
+    }
+    System.exit(exit);
+  }
+
+  /**
+   * Runs one command.
+   *
+   * @param args the arguments
+   * @return the exit code
+   */
+  public static int run(String[] args) {
     BooCli cli = new BooCli();
     int exit = 0;
     try {
@@ -40,12 +69,53 @@ public class Main {
     } catch (OneOpsClientAPIException e) {
       System.err.println(e.getMessage());
       exit = Constants.EXIT_CLIENT;
+    } catch (BooExitException e) {
+      exit = e.getCode();
     } catch (Exception e) {
       System.err.println(e.getMessage());
       exit = Constants.EXIT_UNKOWN;
-    } finally {
-      System.exit(exit);
     }
+    return exit;
+  }
 
+  /**
+   * Starts the daemon, or stops it with 'boo daemon stop'.
+   *
+   * @param args the arguments
+   * @return the exit code
+   */
+  private static int daemon(String[] args) {
+    if (args.length > 1 && BooDaemon.STOP_COMMAND.equals(args[1])) {
+      Integer exit =
+          DaemonClient.run(BooDaemon.defaultPortFile(), args, System.in, System.out, System.err);
+      if (exit == null) {
+        System.err.println(Constants.DAEMON_NOT_RUNNING);
+        return Constants.EXIT_NORMAL;
+      }
+      return exit;
+    }
+    BooDaemon daemon =
+        new BooDaemon(BooDaemon.defaultPortFile(), Main::runInDaemon, BooCli::abortAll);
+    try {
+      daemon.start();
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      return Constants.EXIT_UNKOWN;
+    }
+    daemon.serve();
+    return Constants.EXIT_NORMAL;
+  }
+
+  /**
+   * Runs one command in the daemon, starting from the same stats as a new process. Each command
+   * gets a new BooCli, so flags such as --force or --no-deploy end with the command that set them.
+   *
+   * @param args the arguments
+   * @return the exit code
+   */
+  private static int runInDaemon(String[] args) {
+    RequestStats.reset();
+    Tracer.reset();
+    return run(args);
   }
 }
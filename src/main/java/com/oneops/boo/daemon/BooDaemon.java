@@ -0,0 +1,425 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.daemon;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.oneops.boo.utils.ProgressRenderer;
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * A long running Boo process that runs the commands of {@link DaemonClient}s, so that they do not
+ * pay for JVM startup, class loading and client initialization every time.
+ *
+ * <p>
+ * Java 8 has no Unix domain sockets, so the daemon listens on a loopback port. The port and a
+ * random token are written to a file only the user can read, and every request must carry the
+ * token. Commands run one at a time, since they share System.out, System.in and the CLI flags;
+ * other clients wait in the accept queue. The client frames its input, so that a Ctrl-C or a client
+ * that is gone cancels the command rather than ending its input.
+ */
+public class BooDaemon implements Closeable {
+
+  /** The first argument that starts or stops the daemon. */
+  public static final String DAEMON_COMMAND = "daemon";
+
+  /** The argument that stops the daemon. */
+  public static final String STOP_COMMAND = "stop";
+
+  /** The frame with the exit code. */
+  static final byte EXIT = 0;
+
+  /** The frame with standard output. */
+  static final byte OUT = 1;
+
+  /** The frame with error output. */
+  static final byte ERR = 2;
+
+  /** The client frame with standard input. */
+  static final byte INPUT = 3;
+
+  /** The client frame that ends the standard input. */
+  static final byte INPUT_END = 4;
+
+  /** The client frame that cancels the command, on Ctrl-C. */
+  static final byte CANCEL = 5;
+
+  /**
+   * A command run by the daemon.
+   */
+  @FunctionalInterface
+  public interface Command {
+
+    /**
+     * Runs the command.
+     *
+     * @param args the command line arguments
+     * @return the exit code
+     */
+    int run(String[] args);
+  }
+
+  /** The file with the port and the token. */
+  private final File portFile;
+
+  /** The command. */
+  private final Command command;
+
+  /** Cancels the running command, as Ctrl-C does. */
+  private final Runnable cancel;
+
+  /** The standard output of the daemon itself. */
+  private final PrintStream daemonOut = System.out;
+
+  /** The error output of the daemon itself. */
+  private final PrintStream daemonErr = System.err;
+
+  /** The standard input of the daemon itself. */
+  private final InputStream daemonIn = System.in;
+
+  /** The output of the client being served, or null. */
+  private volatile DataOutputStream client;
+
+  /** The server socket, once started. */
+  private ServerSocket server;
+
+  /** The token. */
+  private String token;
+
+  /**
+   * Instantiates a new daemon.
+   *
+   * @param portFile the file with the port and the token
+   * @param command the command
+   * @param cancel cancels the running command, as Ctrl-C does
+   */
+  public BooDaemon(File portFile, Command command, Runnable cancel) {
+    this.portFile = portFile;
+    this.command = command;
+    this.cancel = cancel;
+  }
+
+  /**
+   * Gets the default file with the port and the token, ~/.boo/daemon.
+   *
+   * @return the file
+   */
+  public static File defaultPortFile() {
+    return new File(System.getProperty("user.home"), ".boo" + File.separator + DAEMON_COMMAND);
+  }
+
+  /**
+   * Listens on a loopback port, writes the port file and sends System.out and System.err to the
+   * client being served. Call before anything else keeps a reference to System.out.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void start() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    byte[] random = new byte[16];
+    new SecureRandom().nextBytes(random);
+    StringBuilder hex = new StringBuilder();
+    for (byte b : random) {
+      hex.append(String.format("%02x", b));
+    }
+    token = hex.toString();
+    writePortFile();
+    System.setOut(new PrintStream(new ClientStream(OUT, daemonOut), true));
+    System.setErr(new PrintStream(new ClientStream(ERR, daemonErr), true));
+  }
+
+  /**
+   * Serves the clients until stopped.
+   */
+  public void serve() {
+    ServerSocket listening = server;
+    daemonOut.printf(Constants.DAEMON_STARTED, listening.getLocalPort(), portFile);
+    daemonOut.println();
+    while (!listening.isClosed()) {
+      try (Socket socket = listening.accept()) {
+        if (!handle(socket)) {
+          break;
+        }
+      } catch (SocketException e) {
+        // Closed
+      } catch (IOException e) {
+        daemonErr.println(e.getMessage());
+      }
+    }
+    close();
+  }
+
+  /**
+   * Stops listening, deletes the port file and restores the standard streams.
+   */
+  @Override
+  public synchronized void close() {
+    if (server == null) {
+      return;
+    }
+    try {
+      server.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+    server = null;
+    portFile.delete();
+    System.setOut(daemonOut);
+    System.setErr(daemonErr);
+    System.setIn(daemonIn);
+  }
+
+  private void writePortFile() throws IOException {
+    portFile.getParentFile().mkdirs();
+    portFile.delete();
+    portFile.createNewFile();
+    portFile.setReadable(false, false);
+    portFile.setWritable(false, false);
+    portFile.setReadable(true, true);
+    portFile.setWritable(true, true);
+    try (Writer writer = Files.newBufferedWriter(portFile.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(server.getLocalPort() + " " + token + "\n");
+    }
+  }
+
+  /**
+   * Runs the command of one client.
+   *
+   * @param socket the client socket
+   * @return false, if the daemon should stop
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private boolean handle(Socket socket) throws IOException {
+    DataInputStream in = new DataInputStream(socket.getInputStream());
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    if (!token.equals(in.readUTF())) {
+      return true;
+    }
+    String cwd = in.readUTF();
+    boolean terminal = in.readBoolean();
+    String[] args = new String[in.readInt()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = in.readUTF();
+    }
+    if (Arrays.equals(args, new String[] {DAEMON_COMMAND, STOP_COMMAND})) {
+      exit(out, Constants.EXIT_NORMAL);
+      return false;
+    }
+    String userDir = System.getProperty("user.dir");
+    System.setProperty("user.dir", cwd);
+    System.setProperty(ProgressRenderer.TERMINAL_PROPERTY, String.valueOf(terminal));
+    ClientInput input = new ClientInput();
+    AtomicBoolean running = new AtomicBoolean(true);
+    this.readInput(in, input, running);
+    System.setIn(input);
+    client = out;
+    int exit;
+    try {
+      exit = command.run(args);
+    } catch (RuntimeException e) {
+      e.printStackTrace();
+      exit = Constants.EXIT_UNKOWN;
+    } finally {
+      synchronized (running) {
+        running.set(false);
+      }
+      System.out.flush();
+      System.err.flush();
+      client = null;
+      System.setIn(daemonIn);
+      System.clearProperty(ProgressRenderer.TERMINAL_PROPERTY);
+      System.setProperty("user.dir", userDir);
+    }
+    exit(out, exit);
+    socket.shutdownOutput();
+    return true;
+  }
+
+  /**
+   * Reads the input frames of the client until it is gone. A cancel frame, or a client gone while
+   * the command runs, cancels the command; once the command is over, nothing is canceled.
+   *
+   * @param in the client input
+   * @param input the standard input of the command
+   * @param running whether the command runs, locked while it is canceled
+   */
+  private void readInput(DataInputStream in, ClientInput input, AtomicBoolean running) {
+    Thread reader = new Thread(() -> {
+      try {
+        byte type;
+        while ((type = in.readByte()) != CANCEL) {
+          if (type == INPUT_END) {
+            input.end();
+          } else {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            input.offer(bytes);
+          }
+        }
+      } catch (IOException e) {
+        // The client is gone
+      }
+      input.end();
+      synchronized (running) {
+        if (running.get()) {
+          cancel.run();
+        }
+      }
+    }, "boo-client");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private static void exit(DataOutputStream out, int exit) throws IOException {
+    synchronized (out) {
+      out.writeByte(EXIT);
+      out.writeInt(exit);
+      out.flush();
+    }
+  }
+
+  /**
+   * The standard input of a command, fed by the input frames of its client.
+   */
+  private static final class ClientInput extends InputStream {
+
+    /** The chunk that ends the input. */
+    private static final byte[] END = new byte[0];
+
+    /** The chunks not read yet. */
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+
+    /** The chunk being read. */
+    private byte[] chunk = new byte[0];
+
+    /** The position in the chunk being read. */
+    private int position;
+
+    /** Whether the input ended. */
+    private boolean isEnded;
+
+    void offer(byte[] bytes) {
+      chunks.add(bytes);
+    }
+
+    void end() {
+      chunks.add(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] bytes, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      while (position == chunk.length) {
+        if (isEnded) {
+          return -1;
+        }
+        try {
+          chunk = chunks.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        position = 0;
+        isEnded = chunk == END;
+      }
+      int count = Math.min(len, chunk.length - position);
+      System.arraycopy(chunk, position, bytes, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public synchronized int available() {
+      return chunk.length - position;
+    }
+  }
+
+  /**
+   * Sends what is written to the client being served, or to the daemon's own stream if none.
+   */
+  private final class ClientStream extends OutputStream {
+
+    /** The frame type. */
+    private final byte type;
+
+    /** The daemon's own stream. */
+    private final PrintStream fallback;
+
+    ClientStream(byte type, PrintStream fallback) {
+      this.type = type;
+      this.fallback = fallback;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      DataOutputStream out = client;
+      if (out == null) {
+        fallback.write(bytes, off, len);
+        return;
+      }
+      synchronized (out) {
+        out.writeByte(type);
+        out.writeInt(len);
+        out.write(bytes, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      DataOutputStream out = client;
+      if (out == null) {
+        fallback.flush();
+        return;
+      }
+      synchronized (out) {
+        out.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * Sends a command line to a running {@link BooDaemon} and relays its output, its input and its exit
+ * code. On Ctrl-C, it asks the daemon to cancel the command and waits a moment for its exit code.
+ * Uses nothing but the JDK, so that it starts as fast as a JVM can.
+ */
+public final class DaemonClient {
+
+  /** The environment variable that sends commands to the daemon when set. */
+  public static final String ENV_VARIABLE = "BOO_DAEMON";
+
+  /** How long a Ctrl-C waits for the daemon to abort the command. */
+  private static final long CANCEL_WAIT_MILLIS = 10000;
+
+  private DaemonClient() {}
+
+  /**
+   * Runs a command in the daemon.
+   *
+   * @param portFile the file with the port and the token
+   * @param args the command line arguments
+   * @param stdin the input to forward
+   * @param out the standard output
+   * @param err the error output
+   * @return the exit code, or null if no daemon is running
+   */
+  public static Integer run(File portFile, String[] args, InputStream stdin, PrintStream out,
+      PrintStream err) {
+    String[] address;
+    try {
+      address = new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8).trim()
+          .split(" ");
+    } catch (IOException e) {
+      return null;
+    }
+    if (address.length != 2) {
+      return null;
+    }
+    Socket socket;
+    try {
+      socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(address[0]));
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+    CountDownLatch relayed = new CountDownLatch(1);
+    Thread hook = null;
+    try {
+      DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+      request.writeUTF(address[1]);
+      request.writeUTF(System.getProperty("user.dir"));
+      request.writeBoolean(System.console() != null && !"dumb".equals(System.getenv("TERM")));
+      request.writeInt(args.length);
+      for (String arg : args) {
+        request.writeUTF(arg);
+      }
+      request.flush();
+      hook = new Thread(() -> cancel(request, relayed), "boo-cancel");
+      Runtime.getRuntime().addShutdownHook(hook);
+      forwardInput(stdin, request);
+      return relay(new DataInputStream(new BufferedInputStream(socket.getInputStream())), out,
+          err);
+    } catch (IOException e) {
+      err.println(e.getMessage());
+      return Constants.EXIT_UNKOWN;
+    } finally {
+      relayed.countDown();
+      if (hook != null) {
+        try {
+          Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+          // The JVM is shutting down, the hook runs
+        }
+      }
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+  }
+
+  /**
+   * Asks the daemon to cancel the command, and waits for the command to end.
+   *
+   * @param request the request stream
+   * @param relayed counted down once the exit code is relayed
+   */
+  private static void cancel(DataOutputStream request, CountDownLatch relayed) {
+    try {
+      synchronized (request) {
+        request.writeByte(BooDaemon.CANCEL);
+        request.flush();
+      }
+      relayed.await(CANCEL_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (IOException e) {
+      // The command is done
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void forwardInput(InputStream stdin, DataOutputStream request) {
+    Thread pump = new Thread(() -> {
+      byte[] buffer = new byte[4096];
+      try {
+        int read;
+        while ((read = stdin.read(buffer)) >= 0) {
+          synchronized (request) {
+            request.writeByte(BooDaemon.INPUT);
+            request.writeInt(read);
+            request.write(buffer, 0, read);
+            request.flush();
+          }
+        }
+        synchronized (request) {
+          request.writeByte(BooDaemon.INPUT_END);
+          request.flush();
+        }
+      } catch (IOException e) {
+        // The command is done
+      }
+    }, "boo-stdin");
+    pump.setDaemon(true);
+    pump.start();
+  }
+
+  private static int relay(DataInputStream in, PrintStream out, PrintStream err)
+      throws IOException {
+    byte[] buffer = new byte[8192];
+    try {
+      while (true) {
+        byte type = in.readByte();
+        if (type == BooDaemon.EXIT) {
+          return in.readInt();
+        }
+        int len = in.readInt();
+        if (len > buffer.length) {
+          buffer = new byte[len];
+        }
+        in.readFully(buffer, 0, len);
+        PrintStream target = type == BooDaemon.ERR ? err : out;
+        target.write(buffer, 0, len);
+        target.flush();
+      }
+    } catch (EOFException e) {
+      err.println(Constants.DAEMON_GONE);
+      return Constants.EXIT_UNKOWN;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.exception;
+
+/**
+ * Ends the command with an exit code, instead of System.exit, which would also end a daemon.
+ */
+public class BooExitException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int code;
+
+  public BooExitException(int code) {
+    super("Exit " + code);
+    this.code = code;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.state;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.oneops.boo.yaml.CloudBean;
+import com.oneops.boo.yaml.EnvironmentBean;
+import com.oneops.boo.yaml.PlatformBean;
+import com.oneops.boo.yaml.ScaleBean;
+import com.oneops.boo.yaml.Yaml;
+import com.oneops.boo.yaml.helper.ContentHashHelper;
+import com.oneops.boo.yaml.helper.EnvironmentBeanHelper;
+
+/**
+ * Compact snapshot of what boo applied to an assembly: one hash per platform component, the
+ * platform variables and, per environment, the cloud map and the scale of every platform component.
+ * The platform hashes cover secrets such as the secure variables, so they are keyed with the
+ * per-user key of the {@link StateStore}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AppliedState {
+
+  /** The platforms, by platform name. */
+  private Map<String, PlatformState> platforms = new ConcurrentHashMap<String, PlatformState>();
+
+  /** The environment cloud map hashes, by environment name. */
+  private Map<String, String> environments = new ConcurrentHashMap<String, String>();
+
+  /** The scale hashes by platform and component, by environment name. */
+  private Map<String, Map<String, String>> scales =
+      new ConcurrentHashMap<String, Map<String, String>>();
+
+  /**
+   * Computes the desired state of the given YAML. Must be called before the workflow starts
+   * because it mutates the component maps while applying them.
+   *
+   * @param yaml the yaml
+   * @param key the key of the platform hashes, see {@link StateStore#getKey()}
+   * @return the state
+   */
+  public static AppliedState of(Yaml yaml, byte[] key) {
+    AppliedState state = new AppliedState();
+    List<String> platformNames = new ArrayList<String>();
+    for (PlatformBean platform : yaml.getPlatformsList()) {
+      state.platforms.put(platform.getName(), PlatformState.of(platform, key));
+      platformNames.add(platform.getName());
+    }
+    for (EnvironmentBean env : yaml.getEnvironmentList()) {
+      Map<String, Object> clouds = new TreeMap<String, Object>();
+      for (CloudBean cloud : env.getClouds()) {
+        String[] cloudConfig = {cloud.getPriority(), cloud.getDpmtOrder(), cloud.getPctScale()};
+        clouds.put(cloud.getCloudName(), cloudConfig);
+      }
+      // A new platform has to get the cloud map as well, so the platform names are part of it.
+      Map<String, Object> content = new TreeMap<String, Object>();
+      content.put("clouds", clouds);
+      content.put("platforms", platformNames);
+      state.environments.put(env.getEnvName(), ContentHashHelper.hash(content));
+      Map<String, String> envScales = new TreeMap<String, String>();
+      for (ScaleBean scale : EnvironmentBeanHelper.getScales(yaml.getScales(), env)) {
+        envScales.put(scaleKey(scale), scaleHash(scale));
+      }
+      state.scales.put(env.getEnvName(), envScales);
+    }
+    return state;
+  }
+
+  /**
+   * Checks if the platform was applied with the same content as desired.
+   *
+   * @param desired the desired state
+   * @param platformName the platform name
+   * @return true, if unchanged
+   */
+  public boolean isPlatformUnchanged(AppliedState desired, String platformName) {
+    PlatformState applied = platforms.get(platformName);
+    return applied != null && applied.equals(desired.platforms.get(platformName));
+  }
+
+  /**
+   * Checks if the environment cloud map was applied with the same content as desired.
+   *
+   * @param desired the desired state
+   * @param envName the env name
+   * @return true, if unchanged
+   */
+  public boolean isEnvironmentUnchanged(AppliedState desired, String envName) {
+    String applied = environments.get(envName);
+    return applied != null && applied.equals(desired.environments.get(envName));
+  }
+
+  /**
+   * Checks if the scale of a platform component was applied to the environment as desired.
+   *
+   * @param desired the desired state
+   * @param envName the env name
+   * @param scale the scale
+   * @return true, if unchanged
+   */
+  public boolean isScaleUnchanged(AppliedState desired, String envName, ScaleBean scale) {
+    Map<String, String> applied = scales.get(envName);
+    String hash = scaleHash(scale);
+    Map<String, String> wanted = desired.scales.get(envName);
+    return applied != null && wanted != null && hash.equals(applied.get(scaleKey(scale)))
+        && hash.equals(wanted.get(scaleKey(scale)));
+  }
+
+  private static String scaleKey(ScaleBean scale) {
+    return scale.getPlatform() + "/" + scale.getComponent();
+  }
+
+  private static String scaleHash(ScaleBean scale) {
+    return ContentHashHelper.hash(Arrays.asList(scale.getCurrent(), scale.getMin(),
+        scale.getMax(), scale.getPercentDeploy()));
+  }
+
+  /**
+   * Records all the platforms of the desired state as applied.
+   *
+   * @param desired the desired state
+   */
+  public void putPlatforms(AppliedState desired) {
+    platforms.clear();
+    platforms.putAll(desired.platforms);
+  }
+
+  /**
+   * Records the environment of the desired state as applied.
+   *
+   * @param desired the desired state
+   * @param envName the env name
+   */
+  public void putEnvironment(AppliedState desired, String envName) {
+    String hash = desired.environments.get(envName);
+    if (hash != null) {
+      environments.put(envName, hash);
+    }
+    this.putScales(desired, envName);
+  }
+
+  /**
+   * Records the scales of the environment of the desired state as applied.
+   *
+   * @param desired the desired state
+   * @param envName the env name
+   */
+  public void putScales(AppliedState desired, String envName) {
+    Map<String, String> envScales = desired.scales.get(envName);
+    if (envScales != null) {
+      scales.put(envName, envScales);
+    }
+  }
+
+  public Map<String, PlatformState> getPlatforms() {
+    return platforms;
+  }
+
+  public void setPlatforms(Map<String, PlatformState> platforms) {
+    this.platforms = new ConcurrentHashMap<String, PlatformState>(platforms);
+  }
+
+  public Map<String, String> getEnvironments() {
+    return environments;
+  }
+
+  public void setEnvironments(Map<String, String> environments) {
+    this.environments = new ConcurrentHashMap<String, String>(environments);
+  }
+
+  public Map<String, Map<String, String>> getScales() {
+    return scales;
+  }
+
+  public void setScales(Map<String, Map<String, String>> scales) {
+    this.scales = new ConcurrentHashMap<String, Map<String, String>>(scales);
+  }
+
+  /**
+   * Hashes of one platform.
+   */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class PlatformState {
+
+    /** The fingerprint of the whole platform. */
+    private String fingerprint;
+
+    /** The pack id and version. */
+    private String pack;
+
+    /** The component hashes, by component name. */
+    private Map<String, String> components = new TreeMap<String, String>();
+
+    /** The variables hash. */
+    private String variables;
+
+    /** The secure variables hash. */
+    private String secureVariables;
+
+    /** The links hash. */
+    private String links;
+
+    /**
+     * Computes the state of a platform.
+     *
+     * @param platform the platform
+     * @param key the key of the hashes
+     * @return the platform state
+     */
+    public static PlatformState of(PlatformBean platform, byte[] key) {
+      PlatformState state = new PlatformState();
+      state.fingerprint = ContentHashHelper.hash(key, platform.getFingerprint());
+      state.pack = platform.getPackId() + ":" + platform.getPackVersion();
+      if (platform.getComponents() != null) {
+        for (Map.Entry<String, Object> entry : platform.getComponents().entrySet()) {
+          state.components.put(entry.getKey(), ContentHashHelper.hash(key, entry.getValue()));
+        }
+      }
+      state.variables = ContentHashHelper.hash(key, platform.getVariables());
+      state.secureVariables = ContentHashHelper.hash(key, platform.getSecureVariables());
+      state.links = ContentHashHelper.hash(key, platform.getLinks());
+      return state;
+    }
+
+    public String getFingerprint() {
+      return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    public String getPack() {
+      return pack;
+    }
+
+    public void setPack(String pack) {
+      this.pack = pack;
+    }
+
+    public Map<String, String> getComponents() {
+      return components;
+    }
+
+    public void setComponents(Map<String, String> components) {
+      this.components = components;
+    }
+
+    public String getVariables() {
+      return variables;
+    }
+
+    public void setVariables(String variables) {
+      this.variables = variables;
+    }
+
+    public String getSecureVariables() {
+      return secureVariables;
+    }
+
+    public void setSecureVariables(String secureVariables) {
+      this.secureVariables = secureVariables;
+    }
+
+    public String getLinks() {
+      return links;
+    }
+
+    public void setLinks(String links) {
+      this.links = links;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof PlatformState)) {
+        return false;
+      }
+      PlatformState other = (PlatformState) obj;
+      return Objects.equals(fingerprint, other.fingerprint) && Objects.equals(pack, other.pack)
+          && Objects.equals(components, other.components)
+          && Objects.equals(variables, other.variables)
+          && Objects.equals(secureVariables, other.secureVariables)
+          && Objects.equals(links, other.links);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fingerprint, pack, components, variables, secureVariables, links);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the steps a run completed, so that a failed run can be resumed where it
+ * stopped. The first line names the run and the hash of the desired state; every other line is a
+ * completed step. Steps are forced to disk in batches, since losing the last few only costs a
+ * resumed run some calls it repeats. A run that completes deletes its journal.
+ */
+public class RunJournal {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(RunJournal.class);
+
+  /** The journal file name. */
+  static final String JOURNAL_FILE = "journal.log";
+
+  /** The first step of a run. */
+  private static final String START = "start";
+
+  /** Steps written between two syncs. */
+  private static final int BATCH = 16;
+
+  /** The journal file. */
+  private final File file;
+
+  /** The steps completed by this run, and by the run it resumes. */
+  private final Set<String> done = new HashSet<String>();
+
+  /** The channel, while the run is open. */
+  private FileChannel channel;
+
+  /** The run id. */
+  private String runId;
+
+  /** Whether this run resumes an earlier one. */
+  private boolean isResumed;
+
+  /** Steps written since the last sync. */
+  private int unsynced;
+
+  /**
+   * Instantiates a new journal in an assembly state directory.
+   *
+   * @param dir the directory
+   */
+  public RunJournal(File dir) {
+    this.file = new File(dir, JOURNAL_FILE);
+  }
+
+  /**
+   * Starts a run. When asked to resume and the journal holds an unfinished run of the same
+   * desired state, its steps count as done and the run continues it; otherwise a new journal is
+   * started.
+   *
+   * @param configHash the hash of the desired state
+   * @param resume whether to resume an unfinished run
+   */
+  public synchronized void start(String configHash, boolean resume) {
+    done.clear();
+    isResumed = resume && this.load(configHash);
+    try {
+      StateStore.createDirectories(file.getParentFile());
+      if (isResumed) {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+      } else {
+        runId = UUID.randomUUID().toString();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        StateStore.ownerOnly(file);
+        this.write(START + " " + configHash);
+        this.sync();
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot write the journal {}: {}", file, e.getMessage());
+      channel = null;
+    }
+  }
+
+  private boolean load(String configHash) {
+    if (!file.isFile()) {
+      return false;
+    }
+    try {
+      List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+      if (lines.isEmpty()) {
+        return false;
+      }
+      String[] first = lines.get(0).split("\t", 2);
+      if (first.length < 2 || !first[1].equals(START + " " + configHash)) {
+        return false;
+      }
+      runId = first[0];
+      for (String line : lines.subList(1, lines.size())) {
+        String[] step = line.split("\t", 2);
+        if (step.length == 2 && step[0].equals(runId)) {
+          done.add(step[1]);
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Ignoring unreadable journal {}: {}", file, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether this run resumes an earlier one.
+   *
+   * @return true, if it does
+   */
+  public synchronized boolean isResumed() {
+    return isResumed;
+  }
+
+  /**
+   * Gets the number of steps done.
+   *
+   * @return the number of steps
+   */
+  public synchronized int size() {
+    return done.size();
+  }
+
+  /**
+   * Checks whether a step is done.
+   *
+   * @param step the step
+   * @return true, if it is
+   */
+  public synchronized boolean isDone(String step) {
+    return done.contains(step);
+  }
+
+  /**
+   * Records a completed step.
+   *
+   * @param step the step, one line
+   */
+  public synchronized void record(String step) {
+    if (!done.add(step) || channel == null) {
+      return;
+    }
+    try {
+      this.write(step);
+      if (++unsynced >= BATCH) {
+        this.sync();
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot write the journal {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Forces the recorded steps to disk, e.g. at the end of a phase.
+   */
+  public synchronized void sync() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.force(false);
+      unsynced = 0;
+    } catch (IOException e) {
+      LOG.warn("Cannot sync the journal {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Ends the run. A completed run deletes the journal; a failed one keeps it to be resumed.
+   *
+   * @param isCompleted whether the run completed
+   */
+  public synchronized void finish(boolean isCompleted) {
+    if (channel == null) {
+      return;
+    }
+    this.sync();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+    channel = null;
+    if (isCompleted && file.exists() && !file.delete()) {
+      LOG.warn("Cannot delete the journal {}", file);
+    }
+  }
+
+  private void write(String line) throws IOException {
+    ByteBuffer bytes =
+        ByteBuffer.wrap((runId + "\t" + line + "\n").getBytes(StandardCharsets.UTF_8));
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Persists the {@link AppliedState} of an assembly under ~/.boo/state/&lt;org&gt;/&lt;assembly&gt;.
+ * The state files are readable by their owner only, and the platform hashes in them are keyed with
+ * a random per-user key kept in ~/.boo/state/.key.
+ */
+public class StateStore {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(StateStore.class);
+
+  /** System property to move the state root, mainly for testing. */
+  public static final String STATE_DIR_PROPERTY = "boo.state.dir";
+
+  /** The Constant STATE_FILE. */
+  private static final String STATE_FILE = "state.json";
+
+  /** The key file, in the state root. */
+  private static final String KEY_FILE = ".key";
+
+  /** The key length. */
+  private static final int KEY_BYTES = 32;
+
+  /** The mapper. */
+  private final ObjectMapper mapper =
+      new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+          .configure(SerializationFeature.INDENT_OUTPUT, true);
+
+  /** The state root. */
+  private final File root;
+
+  /** The assembly state directory. */
+  private final File dir;
+
+  /** The key of the platform hashes, once read. */
+  private byte[] key;
+
+  /**
+   * Instantiates a new state store in the default location.
+   *
+   * @param org the org
+   * @param assemblyName the assembly name
+   */
+  public StateStore(String org, String assemblyName) {
+    this(defaultRoot(), org, assemblyName);
+  }
+
+  /**
+   * Instantiates a new state store.
+   *
+   * @param root the state root
+   * @param org the org
+   * @param assemblyName the assembly name
+   */
+  public StateStore(File root, String org, String assemblyName) {
+    this.root = root;
+    this.dir = new File(new File(root, String.valueOf(org)), String.valueOf(assemblyName));
+  }
+
+  /**
+   * The default state root, ~/.boo/state.
+   *
+   * @return the file
+   */
+  public static File defaultRoot() {
+    String root = System.getProperty(STATE_DIR_PROPERTY);
+    if (root != null) {
+      return new File(root);
+    }
+    return new File(System.getProperty("user.home"), ".boo" + File.separator + "state");
+  }
+
+  /**
+   * Loads the last applied state. A missing or unreadable snapshot yields an empty state, so the
+   * next run just compares everything with OneOps again.
+   *
+   * @return the applied state
+   */
+  public synchronized AppliedState load() {
+    File file = new File(dir, STATE_FILE);
+    if (file.isFile()) {
+      try {
+        return mapper.readValue(file, AppliedState.class);
+      } catch (IOException e) {
+        LOG.warn("Ignoring unreadable state {}: {}", file, e.getMessage());
+      }
+    }
+    return new AppliedState();
+  }
+
+  /**
+   * Saves the state. Failures only cost the next run its shortcut, so they are logged and ignored.
+   *
+   * @param state the state
+   */
+  public synchronized void save(AppliedState state) {
+    try {
+      createDirectories(dir);
+      File tmp = Files.createTempFile(dir.toPath(), STATE_FILE, ".tmp").toFile();
+      ownerOnly(tmp);
+      mapper.writeValue(tmp, state);
+      Files.move(tmp.toPath(), new File(dir, STATE_FILE).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Cannot save state in {}: {}", dir, e.getMessage());
+    }
+  }
+
+  /**
+   * Forgets the state, e.g. once the assembly is deleted.
+   */
+  public synchronized void clear() {
+    File file = new File(dir, STATE_FILE);
+    if (file.exists() && !file.delete()) {
+      LOG.warn("Cannot delete state {}", file);
+    }
+  }
+
+  /**
+   * Gets the key of the platform hashes, creating it on first use. Without a readable key, a key of
+   * this process is used: the state then works within the run but never matches a saved one.
+   *
+   * @return the key
+   */
+  public synchronized byte[] getKey() {
+    if (key == null) {
+      key = readKey(new File(root, KEY_FILE));
+    }
+    return key;
+  }
+
+  private static byte[] readKey(File file) {
+    try {
+      if (!file.isFile()) {
+        createDirectories(file.getParentFile());
+        byte[] created = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(created);
+        Path tmp = Files.createTempFile(file.getParentFile().toPath(), KEY_FILE, ".tmp");
+        try {
+          ownerOnly(tmp.toFile());
+          Files.write(tmp, created);
+          // A link fails if another run created the key first, unlike a move.
+          Files.createLink(file.toPath(), tmp);
+        } catch (FileAlreadyExistsException e) {
+          // Use the key of the other run
+        } finally {
+          Files.deleteIfExists(tmp);
+        }
+      }
+      byte[] read = Files.readAllBytes(file.toPath());
+      if (read.length == KEY_BYTES) {
+        return read;
+      }
+      LOG.warn("Ignoring the invalid state key {}", file);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Cannot read the state key {}: {}", file, e.getMessage());
+    }
+    byte[] ephemeral = new byte[KEY_BYTES];
+    new SecureRandom().nextBytes(ephemeral);
+    return ephemeral;
+  }
+
+  /**
+   * Creates a directory and its missing parents, readable by the owner only.
+   *
+   * @param directory the directory
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void createDirectories(File directory) throws IOException {
+    if (!directory.isDirectory()) {
+      Files.createDirectories(directory.toPath());
+      ownerOnly(directory);
+    }
+  }
+
+  /**
+   * Makes a file or directory readable and writable by its owner only.
+   *
+   * @param file the file
+   */
+  public static void ownerOnly(File file) {
+    file.setReadable(false, false);
+    file.setWritable(false, false);
+    file.setReadable(true, true);
+    file.setWritable(true, true);
+    if (file.isDirectory()) {
+      file.setExecutable(false, false);
+      file.setExecutable(true, true);
+    }
+  }
+
+  /**
+   * Gets the assembly state directory.
+   *
+   * @return the directory
+   */
+  public File getDirectory() {
+    return dir;
+  }
+}
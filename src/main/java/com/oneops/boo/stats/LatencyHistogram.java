@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in microseconds. Values below 16us are exact, larger ones land in
+ * one of 8 buckets per power of two, so a percentile is at most 12.5% above the real value.
+ */
+public class LatencyHistogram {
+
+  /** Exact buckets below this value. */
+  private static final int LINEAR = 16;
+
+  /** Sub-buckets per power of two, as a shift. */
+  private static final int SUB_BITS = 3;
+
+  /** The number of buckets, enough for about 12 days. */
+  private static final int BUCKETS = LINEAR + (40 - 4) * (1 << SUB_BITS);
+
+  /** The counts per bucket. */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /** The number of values. */
+  private final LongAdder count = new LongAdder();
+
+  /** The sum of the values. */
+  private final LongAdder total = new LongAdder();
+
+  /** The largest value. */
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a value.
+   *
+   * @param micros the latency in microseconds
+   */
+  public void record(long micros) {
+    long value = Math.max(0, micros);
+    counts.incrementAndGet(bucket(value));
+    count.increment();
+    total.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Gets the count.
+   *
+   * @return the number of values
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Gets the total.
+   *
+   * @return the sum of the values in microseconds
+   */
+  public long getTotal() {
+    return total.sum();
+  }
+
+  /**
+   * Gets the max.
+   *
+   * @return the largest value in microseconds
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets a percentile.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the value in microseconds, or 0 without values
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long sum = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      sum += snapshot[i];
+    }
+    if (sum == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * sum));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  static int bucket(long value) {
+    if (value < LINEAR) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+    int index = LINEAR + (exponent - 4) * (1 << SUB_BITS) + sub;
+    return Math.min(index, BUCKETS - 1);
+  }
+
+  static long upperBound(int bucket) {
+    if (bucket < LINEAR) {
+      return bucket;
+    }
+    int exponent = (bucket - LINEAR) / (1 << SUB_BITS) + 4;
+    int sub = (bucket - LINEAR) % (1 << SUB_BITS);
+    return ((long) ((1 << SUB_BITS) + sub + 1) << (exponent - SUB_BITS)) - 1;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Call counts, errors and latency histograms of the OneOps client calls of this process, per
+ * logical operation such as createPlatform or deploy.
+ */
+public final class RequestStats {
+
+  /** The summary header. */
+  private static final String HEADER_FORMAT = "%-36s %7s %7s %10s %10s %10s %10s %11s";
+
+  /** The summary line. */
+  private static final String LINE_FORMAT = "%-36s %7d %7d %10s %10s %10s %10s %11s";
+
+  /** The stats by operation. */
+  private static final Map<String, OperationStats> OPERATIONS =
+      new ConcurrentHashMap<String, OperationStats>();
+
+  private RequestStats() {}
+
+  /**
+   * Records one call.
+   *
+   * @param operation the operation name
+   * @param nanos the latency in nanoseconds
+   * @param failed whether the call threw
+   */
+  public static void record(String operation, long nanos, boolean failed) {
+    OperationStats stats = OPERATIONS.get(operation);
+    if (stats == null) {
+      stats = OPERATIONS.computeIfAbsent(operation, OperationStats::new);
+    }
+    stats.record(nanos, failed);
+  }
+
+  /**
+   * Gets the operations.
+   *
+   * @return the stats by operation name, sorted by name
+   */
+  public static Map<String, OperationStats> getOperations() {
+    return new TreeMap<String, OperationStats>(OPERATIONS);
+  }
+
+  /**
+   * Forgets every call recorded so far.
+   */
+  public static void reset() {
+    OPERATIONS.clear();
+  }
+
+  /**
+   * Formats the summary table, slowest operation in total first.
+   *
+   * @return the lines of the summary
+   */
+  public static List<String> summary() {
+    List<OperationStats> operations = new ArrayList<OperationStats>(OPERATIONS.values());
+    operations.sort((a, b) -> Long.compare(b.histogram.getTotal(), a.histogram.getTotal()));
+    List<String> lines = new ArrayList<String>();
+    lines.add(String.format(HEADER_FORMAT, "Operation", "Calls", "Errors", "p50", "p95", "p99",
+        "Max", "Total"));
+    long calls = 0;
+    long errors = 0;
+    long total = 0;
+    for (OperationStats stats : operations) {
+      LatencyHistogram histogram = stats.histogram;
+      lines.add(String.format(LINE_FORMAT, stats.name, histogram.getCount(), stats.getErrors(),
+          millis(histogram.getPercentile(50)), millis(histogram.getPercentile(95)),
+          millis(histogram.getPercentile(99)), millis(histogram.getMax()),
+          millis(histogram.getTotal())));
+      calls += histogram.getCount();
+      errors += stats.getErrors();
+      total += histogram.getTotal();
+    }
+    lines.add(String.format(LINE_FORMAT, "All", calls, errors, "", "", "", "", millis(total)));
+    return lines;
+  }
+
+  /**
+   * Writes the stats as JSON, for dashboards.
+   *
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void writeJson(File file) throws IOException {
+    Map<String, Object> operations = new LinkedHashMap<String, Object>();
+    for (OperationStats stats : getOperations().values()) {
+      operations.put(stats.name, stats.toMap());
+    }
+    Map<String, Object> json = new LinkedHashMap<String, Object>();
+    json.put("unit", "ms");
+    json.put("operations", operations);
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, json);
+  }
+
+  private static String millis(long micros) {
+    return String.format("%.1fms", micros / 1000.0);
+  }
+
+  /**
+   * The stats of one operation.
+   */
+  public static class OperationStats {
+
+    /** The operation name. */
+    private final String name;
+
+    /** The latencies. */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /** The failed calls. */
+    private final LongAdder errors = new LongAdder();
+
+    OperationStats(String name) {
+      this.name = name;
+    }
+
+    void record(long nanos, boolean failed) {
+      histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+      if (failed) {
+        errors.increment();
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public LatencyHistogram getHistogram() {
+      return histogram;
+    }
+
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<String, Object>();
+      map.put("count", histogram.getCount());
+      map.put("errors", getErrors());
+      map.put("p50", histogram.getPercentile(50) / 1000.0);
+      map.put("p95", histogram.getPercentile(95) / 1000.0);
+      map.put("p99", histogram.getPercentile(99) / 1000.0);
+      map.put("max", histogram.getMax() / 1000.0);
+      map.put("total", histogram.getTotal() / 1000.0);
+      return map;
+    }
+  }
+}
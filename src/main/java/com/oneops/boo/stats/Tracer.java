@@ -0,0 +1,349 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Spans of the workflow phases and of every OneOps request in this process. Phases nest through
+ * the current span of the thread, or an explicit parent when the work moves to another thread.
+ * Spans are only recorded while tracing is enabled; otherwise a shared span that records nothing
+ * is handed out, so that long runs do not keep every request in memory.
+ */
+public final class Tracer {
+
+  /** The category of the workflow phases. */
+  public static final String PHASE = "phase";
+
+  /** The category of the OneOps requests. */
+  public static final String REQUEST = "request";
+
+  /** The report line. */
+  private static final String LINE_FORMAT = "%s %-44s %9s %9s";
+
+  /** All time stamps are relative to this one. */
+  private static final long ORIGIN = System.nanoTime();
+
+  /** The spans, in start order. */
+  private static final ConcurrentLinkedQueue<Span> SPANS = new ConcurrentLinkedQueue<Span>();
+
+  /** The innermost open span of each thread. */
+  private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+
+  /** The span handed out while tracing is disabled. */
+  private static final Span NOOP = new Span();
+
+  /** Whether spans are recorded. */
+  private static volatile boolean isEnabled = false;
+
+  private Tracer() {}
+
+  /**
+   * Turns the recording of spans on or off, e.g. for --trace and --trace-file.
+   *
+   * @param isEnabled whether spans are recorded
+   */
+  public static void setEnabled(boolean isEnabled) {
+    Tracer.isEnabled = isEnabled;
+  }
+
+  /**
+   * Checks whether spans are recorded.
+   *
+   * @return true, if they are
+   */
+  public static boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * Starts a phase inside the current span of this thread.
+   *
+   * @param name the phase name
+   * @return the span, to close when the phase is done
+   */
+  public static Span start(String name) {
+    return start(name, CURRENT.get());
+  }
+
+  /**
+   * Starts a phase inside the given span, e.g. one started by another thread.
+   *
+   * @param name the phase name
+   * @param parent the parent span, or null
+   * @return the span, to close when the phase is done
+   */
+  public static Span start(String name, Span parent) {
+    return isEnabled ? new Span(name, PHASE, parent == NOOP ? null : parent) : NOOP;
+  }
+
+  /**
+   * Gets the current span of this thread, to pass as the parent of work moved to other threads.
+   *
+   * @return the span, or null
+   */
+  public static Span current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Starts a OneOps request inside the current span of this thread.
+   *
+   * @param operation the operation name
+   * @return the span, to close when the response is in
+   */
+  public static Span request(String operation) {
+    return isEnabled ? new Span(operation, REQUEST, CURRENT.get()) : NOOP;
+  }
+
+  /**
+   * Gets the spans.
+   *
+   * @return the spans, in start order
+   */
+  public static List<Span> getSpans() {
+    return new ArrayList<Span>(SPANS);
+  }
+
+  /**
+   * Forgets every span recorded so far.
+   */
+  public static void reset() {
+    SPANS.clear();
+  }
+
+  /**
+   * The critical path of a span: the chain of child phases that, one after the other, ended last,
+   * followed down to the innermost phases. Shortening anything off this path does not make the
+   * span any shorter.
+   *
+   * @param span the span
+   * @return the span and the phases on its critical path
+   */
+  public static List<Span> criticalPath(Span span) {
+    List<Span> path = new ArrayList<Span>();
+    criticalPath(span, phases(), path);
+    return path;
+  }
+
+  /**
+   * Formats the phase tree with durations, marking the critical path of each root with '*'.
+   *
+   * @return the lines of the report
+   */
+  public static List<String> report() {
+    List<Span> phases = phases();
+    Set<Span> critical = new HashSet<Span>();
+    List<Span> roots = new ArrayList<Span>();
+    for (Span span : phases) {
+      if (span.parent == null) {
+        roots.add(span);
+        criticalPath(span, phases, critical);
+      }
+    }
+    List<String> lines = new ArrayList<String>();
+    lines.add(String.format(LINE_FORMAT, " ", "Phase", "Start", "Duration"));
+    for (Span root : roots) {
+      report(root, phases, critical, "", lines);
+    }
+    return lines;
+  }
+
+  /**
+   * Writes all spans in the Chrome trace event format, to open in chrome://tracing or Perfetto.
+   *
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void writeChromeTrace(File file) throws IOException {
+    List<Map<String, Object>> events = new ArrayList<Map<String, Object>>();
+    for (Span span : SPANS) {
+      Map<String, Object> event = new LinkedHashMap<String, Object>();
+      event.put("name", span.name);
+      event.put("cat", span.category);
+      event.put("ph", "X");
+      event.put("ts", TimeUnit.NANOSECONDS.toMicros(span.start - ORIGIN));
+      event.put("dur", TimeUnit.NANOSECONDS.toMicros(span.getDuration()));
+      event.put("pid", 1);
+      event.put("tid", span.threadId);
+      Map<String, Object> args = new LinkedHashMap<String, Object>();
+      args.put("thread", span.threadName);
+      if (!span.isClosed()) {
+        args.put("unfinished", true);
+      }
+      event.put("args", args);
+      events.add(event);
+    }
+    Map<String, Object> trace = new LinkedHashMap<String, Object>();
+    trace.put("traceEvents", events);
+    trace.put("displayTimeUnit", "ms");
+    new ObjectMapper().writeValue(file, trace);
+  }
+
+  private static List<Span> phases() {
+    List<Span> phases = new ArrayList<Span>();
+    for (Span span : SPANS) {
+      if (PHASE.equals(span.category)) {
+        phases.add(span);
+      }
+    }
+    return phases;
+  }
+
+  private static List<Span> children(Span span, List<Span> phases) {
+    List<Span> children = new ArrayList<Span>();
+    for (Span phase : phases) {
+      if (phase.parent == span) {
+        children.add(phase);
+      }
+    }
+    return children;
+  }
+
+  private static void criticalPath(Span span, List<Span> phases, Collection<Span> path) {
+    path.add(span);
+    List<Span> children = children(span, phases);
+    children.sort(Comparator.comparingLong(Span::getEnd).reversed());
+    List<Span> chain = new ArrayList<Span>();
+    long cursor = span.getEnd();
+    for (Span child : children) {
+      if (child.getEnd() <= cursor) {
+        chain.add(child);
+        cursor = child.start;
+      }
+    }
+    Collections.reverse(chain);
+    for (Span child : chain) {
+      criticalPath(child, phases, path);
+    }
+  }
+
+  private static void report(Span span, List<Span> phases, Set<Span> critical, String indent,
+      List<String> lines) {
+    lines.add(String.format(LINE_FORMAT, critical.contains(span) ? "*" : " ", indent + span.name,
+        seconds(span.start - ORIGIN), seconds(span.getDuration())));
+    for (Span child : children(span, phases)) {
+      report(child, phases, critical, indent + "  ", lines);
+    }
+  }
+
+  private static String seconds(long nanos) {
+    return String.format("%.2fs", nanos / 1e9);
+  }
+
+  /**
+   * One phase or request.
+   */
+  public static final class Span implements AutoCloseable {
+
+    /** The name. */
+    private final String name;
+
+    /** The category. */
+    private final String category;
+
+    /** The parent span, or null. */
+    private final Span parent;
+
+    /** The span this one replaced as the current span of its thread. */
+    private final Span previous;
+
+    /** The thread id. */
+    private final long threadId;
+
+    /** The thread name. */
+    private final String threadName;
+
+    /** The start, in nanoseconds. */
+    private final long start;
+
+    /** The end, in nanoseconds, or 0 while open. */
+    private volatile long end;
+
+    Span(String name, String category, Span parent) {
+      this.name = name;
+      this.category = category;
+      this.parent = parent;
+      this.previous = CURRENT.get();
+      this.threadId = Thread.currentThread().getId();
+      this.threadName = Thread.currentThread().getName();
+      this.start = System.nanoTime();
+      CURRENT.set(this);
+      SPANS.add(this);
+    }
+
+    /** The span that records nothing. */
+    private Span() {
+      this.name = "";
+      this.category = PHASE;
+      this.parent = null;
+      this.previous = null;
+      this.threadId = 0;
+      this.threadName = "";
+      this.start = ORIGIN;
+      this.end = ORIGIN + 1;
+    }
+
+    @Override
+    public void close() {
+      if (end == 0) {
+        end = System.nanoTime();
+        CURRENT.set(previous);
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getCategory() {
+      return category;
+    }
+
+    public Span getParent() {
+      return parent;
+    }
+
+    public boolean isClosed() {
+      return end != 0;
+    }
+
+    long getEnd() {
+      return end == 0 ? System.nanoTime() : end;
+    }
+
+    /**
+     * Gets the duration, up to now while the span is open.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDuration() {
+      return getEnd() - start;
+    }
+  }
+}
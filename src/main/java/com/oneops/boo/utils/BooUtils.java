@@ -21,10 +21,10 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
-import com.google.common.util.concurrent.Uninterruptibles;
 import com.oneops.api.exception.OneOpsClientAPIException;
 import com.oneops.boo.BooConfig;
 import com.oneops.boo.exception.BooException;
+import com.oneops.boo.exception.BooExitException;
 import com.oneops.boo.workflow.AbstractWorkflow;
 import com.oneops.boo.workflow.BuildAllPlatforms;
 import com.oneops.boo.yaml.Constants;
@@ -57,9 +57,15 @@ public class BooUtils {
    * Wait certain time.
    *
    * @param seconds the seconds
+   * @throws BooExitException if interrupted, e.g. by Ctrl-C
    */
   public void waitTimeout(int seconds) {
-    Uninterruptibles.sleepUninterruptibly(seconds, TimeUnit.SECONDS);
+    try {
+      TimeUnit.SECONDS.sleep(seconds);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BooExitException(Constants.EXIT_CANCELED);
+    }
   }
 
   /**
@@ -212,11 +218,13 @@ public class BooUtils {
         queue.add(i);
         workflow.createPlatform(platforms.get(i));
       } else {
+        workflow.commitDesign();
         checkPlatformQ(workflow);
         queue.clear();
         prevOrderIdx++;
       }
     }
+    workflow.commitDesign();
     return true;
   }
 
@@ -230,7 +238,7 @@ public class BooUtils {
       if (!Constants.ACTIVE.equalsIgnoreCase(workFlow.getStatus())) {
         break;
       }
-      waitTimeout(30);
+      workFlow.getCancellation().sleep(TimeUnit.SECONDS.toMillis(30));
     }
   }
 
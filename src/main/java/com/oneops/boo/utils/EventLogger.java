@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.utils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Log events written by a single writer thread, so that the workflow threads only pay for putting
+ * an event on a bounded ring buffer and never wait for the console or for each other.
+ *
+ * <p>
+ * The message is formatted on the writer thread, so the arguments must not change once logged.
+ * Events go to the console and, optionally, to a JSON lines file for CI. With neither, logging does
+ * nothing at all.
+ */
+public class EventLogger {
+
+  /** The default ring buffer size. */
+  public static final int CAPACITY = 1024;
+
+  /** How long to wait for the writer when the process exits. */
+  private static final long EXIT_TIMEOUT_MILLIS = 2000;
+
+  /** The pending events. */
+  private final BlockingQueue<Event> buffer;
+
+  /** The standard output. */
+  private final PrintStream out;
+
+  /** The error output. */
+  private final PrintStream err;
+
+  /** The JSON mapper, used by the writer thread only. */
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  /** Whether to print the events. */
+  private volatile boolean console = true;
+
+  /** The JSON lines output, or null. */
+  private volatile Writer json;
+
+  /** The events put on the buffer. */
+  private final AtomicLong published = new AtomicLong();
+
+  /** The events written, guarded by this. */
+  private long written;
+
+  /** The writer thread, once started. */
+  private volatile Thread writer;
+
+  /**
+   * Instantiates a new logger.
+   *
+   * @param out the standard output
+   * @param err the error output
+   * @param capacity the ring buffer size
+   */
+  public EventLogger(PrintStream out, PrintStream err, int capacity) {
+    this.out = out;
+    this.err = err;
+    this.buffer = new ArrayBlockingQueue<Event>(capacity);
+  }
+
+  /**
+   * Sets whether to print the events, e.g. not with --quiet.
+   *
+   * @param console whether to print the events
+   */
+  public void setConsole(boolean console) {
+    this.console = console;
+  }
+
+  /**
+   * Sets the JSON lines output. The logger closes it on {@link #close()}.
+   *
+   * @param json the output, or null for none
+   */
+  public void setJson(Writer json) {
+    this.json = json;
+  }
+
+  /**
+   * Checks whether an event would be written anywhere.
+   *
+   * @return true, if enabled
+   */
+  public boolean isEnabled() {
+    return console || json != null;
+  }
+
+  /**
+   * Logs an event. Blocks only if the ring buffer is full.
+   *
+   * @param error whether this is an error
+   * @param format the message format
+   * @param args the message arguments
+   */
+  public void log(boolean error, String format, Object... args) {
+    if (!isEnabled()) {
+      return;
+    }
+    Event event = new Event(System.currentTimeMillis(), error, Thread.currentThread().getName(),
+        format, args);
+    if (writer == null) {
+      startWriter();
+    }
+    published.incrementAndGet();
+    try {
+      buffer.put(event);
+    } catch (InterruptedException e) {
+      published.decrementAndGet();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits until every event logged so far is written.
+   *
+   * @param timeoutMillis the longest wait
+   * @return true, if everything was written in time
+   */
+  public synchronized boolean flush(long timeoutMillis) {
+    long target = published.get();
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (written < target) {
+      long left = deadline - System.currentTimeMillis();
+      if (left <= 0) {
+        return false;
+      }
+      try {
+        wait(left);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the pending events and closes the JSON lines output.
+   */
+  public void close() {
+    flush(EXIT_TIMEOUT_MILLIS);
+    Writer output = json;
+    json = null;
+    if (output != null) {
+      try {
+        output.close();
+      } catch (IOException e) {
+        err.println(e.getMessage());
+      }
+    }
+  }
+
+  private synchronized void startWriter() {
+    if (writer != null) {
+      return;
+    }
+    Thread thread = new Thread(this::drain, "boo-log");
+    thread.setDaemon(true);
+    thread.start();
+    writer = thread;
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(EXIT_TIMEOUT_MILLIS)));
+  }
+
+  private void drain() {
+    List<Event> batch = new ArrayList<Event>();
+    while (true) {
+      try {
+        batch.add(buffer.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      buffer.drainTo(batch);
+      write(batch);
+      synchronized (this) {
+        written += batch.size();
+        notifyAll();
+      }
+      batch.clear();
+    }
+  }
+
+  private void write(List<Event> batch) {
+    if (console) {
+      synchronized (ProgressRenderer.CONSOLE) {
+        ProgressRenderer.clearStatusLine();
+        for (Event event : batch) {
+          PrintStream stream = event.error ? err : out;
+          stream.println(event.getMessage());
+        }
+        out.flush();
+        err.flush();
+      }
+    }
+    Writer output = json;
+    if (output != null) {
+      try {
+        for (Event event : batch) {
+          output.write(mapper.writeValueAsString(event.toMap()));
+          output.write('\n');
+        }
+        output.flush();
+      } catch (IOException e) {
+        json = null;
+        err.println(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * One log event.
+   */
+  static final class Event {
+
+    /** The time, in milliseconds since the epoch. */
+    private final long time;
+
+    /** Whether this is an error. */
+    private final boolean error;
+
+    /** The thread that logged it. */
+    private final String thread;
+
+    /** The message format. */
+    private final String format;
+
+    /** The message arguments. */
+    private final Object[] args;
+
+    /** The message, once formatted. */
+    private String message;
+
+    Event(long time, boolean error, String thread, String format, Object[] args) {
+      this.time = time;
+      this.error = error;
+      this.thread = thread;
+      this.format = format;
+      this.args = args;
+    }
+
+    String getMessage() {
+      if (message == null) {
+        message = String.format(format, args);
+      }
+      return message;
+    }
+
+    Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<String, Object>();
+      map.put("time", Instant.ofEpochMilli(time).toString());
+      map.put("level", error ? "error" : "info");
+      map.put("thread", thread);
+      map.put("message", getMessage().trim());
+      return map;
+    }
+  }
+}
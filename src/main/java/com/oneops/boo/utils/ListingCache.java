@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.jayway.restassured.authentication.PreemptiveBasicAuthScheme;
+import com.jayway.restassured.builder.ResponseBuilder;
+import com.jayway.restassured.filter.Filter;
+import com.jayway.restassured.filter.FilterContext;
+import com.jayway.restassured.http.Method;
+import com.jayway.restassured.response.Response;
+import com.jayway.restassured.specification.FilterableRequestSpecification;
+import com.jayway.restassured.specification.FilterableResponseSpecification;
+import com.oneops.boo.state.StateStore;
+
+/**
+ * Caches the OneOps listings, such as the assemblies of an organization or the platforms of an
+ * assembly, which are the largest and most repeated responses. A listing the server tagged with
+ * an ETag or a Last-Modified date is revalidated with a conditional GET, which costs a 304
+ * instead of the payload; any other listing is reused for a short time. The entries are kept in
+ * memory up to a size, and optionally on disk so that the next command can revalidate them too.
+ * Every request that is not a GET drops the whole cache.
+ */
+public class ListingCache implements Filter {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(ListingCache.class);
+
+  /** System property to move the cache directory, or to turn the disk cache off when empty. */
+  public static final String CACHE_DIR_PROPERTY = "boo.cache.dir";
+
+  /** How long a listing without a validator is reused. */
+  public static final long DEFAULT_TTL_MILLIS = 30000;
+
+  /** The most bytes kept in memory. */
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  /** The last path segments of the cached listings. */
+  private static final Set<String> LISTINGS = new HashSet<String>(
+      Arrays.asList("assemblies", "environments", "platforms", "attachments", "variables"));
+
+  /** The suffix of the entry files. */
+  private static final String SUFFIX = ".json";
+
+  /** The mapper. */
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** How long a listing without a validator is reused, in milliseconds. */
+  private final long ttlMillis;
+
+  /** The most bytes kept in memory. */
+  private final long maxBytes;
+
+  /** The directory of the entries, or null to keep them in memory only. */
+  private final File dir;
+
+  /** The entries by key, least recently used first. */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f,
+      true);
+
+  /** The bytes of the entries in memory. */
+  private long bytes;
+
+  /** Whether the directory may hold entries. */
+  private boolean isDiskUsed = true;
+
+  /**
+   * Whether the cache is used by the command of this thread and the threads it starts. The cache
+   * is shared by the commands of a batch, so --no-cache cannot be a field of the cache.
+   */
+  private final InheritableThreadLocal<Boolean> isEnabled = new InheritableThreadLocal<Boolean>() {
+    @Override
+    protected Boolean initialValue() {
+      return Boolean.TRUE;
+    }
+  };
+
+  /**
+   * Instantiates a new cache.
+   *
+   * @param ttlMillis how long a listing without a validator is reused, in milliseconds
+   * @param maxBytes the most bytes kept in memory
+   * @param dir the directory of the entries, or null to keep them in memory only
+   */
+  public ListingCache(long ttlMillis, long maxBytes, File dir) {
+    this.ttlMillis = ttlMillis;
+    this.maxBytes = maxBytes;
+    this.dir = dir;
+  }
+
+  /**
+   * The default cache directory, ~/.boo/cache.
+   *
+   * @return the directory, or null if the disk cache is turned off
+   */
+  public static File defaultDir() {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (dir != null) {
+      return dir.isEmpty() ? null : new File(dir);
+    }
+    return new File(System.getProperty("user.home"), ".boo" + File.separator + "cache");
+  }
+
+  /**
+   * Turns the cache on or off for the command of this thread, e.g. for --no-cache. The threads the
+   * command starts afterwards inherit the setting; other commands keep theirs.
+   *
+   * @param isEnabled whether the cache is used
+   */
+  public void setEnabled(boolean isEnabled) {
+    this.isEnabled.set(isEnabled);
+  }
+
+  @Override
+  public Response filter(FilterableRequestSpecification request,
+      FilterableResponseSpecification response, FilterContext ctx) {
+    if (request.getMethod() != Method.GET) {
+      try {
+        return ctx.next(request, response);
+      } finally {
+        this.clear();
+      }
+    }
+    if (!isEnabled.get() || !isListing(request.getURI())) {
+      return ctx.next(request, response);
+    }
+    String key = key(request);
+    Entry entry = this.get(key);
+    long now = System.currentTimeMillis();
+    if (entry != null) {
+      if (!entry.hasValidator() && now - entry.stored < ttlMillis) {
+        return entry.toResponse();
+      }
+      if (entry.etag != null) {
+        request.header("If-None-Match", entry.etag);
+      }
+      if (entry.lastModified != null) {
+        request.header("If-Modified-Since", entry.lastModified);
+      }
+    }
+    Response fetched = ctx.next(request, response);
+    if (fetched.getStatusCode() == 304 && entry != null) {
+      entry.stored = now;
+      return entry.toResponse();
+    }
+    if (fetched.getStatusCode() != 200) {
+      return fetched;
+    }
+    Entry fresh = new Entry();
+    fresh.body = fetched.asString();
+    fresh.contentType = fetched.getContentType();
+    fresh.etag = fetched.getHeader("ETag");
+    fresh.lastModified = fetched.getHeader("Last-Modified");
+    fresh.stored = now;
+    this.put(key, fresh);
+    return fresh.toResponse();
+  }
+
+  /**
+   * Drops every entry, in memory and on disk.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+    if (dir == null || !isDiskUsed) {
+      return;
+    }
+    File[] files = dir.listFiles((parent, name) -> name.endsWith(SUFFIX));
+    if (files != null) {
+      for (File file : files) {
+        if (!file.delete()) {
+          LOG.debug("Cannot delete {}", file);
+        }
+      }
+    }
+    isDiskUsed = false;
+  }
+
+  private static boolean isListing(String uri) {
+    int query = uri.indexOf('?');
+    String path = query < 0 ? uri : uri.substring(0, query);
+    if (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return LISTINGS.contains(path.substring(path.lastIndexOf('/') + 1));
+  }
+
+  /**
+   * The key of a listing: a hash of its URI and of the credentials, which may list other CIs.
+   */
+  private static String key(FilterableRequestSpecification request) {
+    StringBuilder key = new StringBuilder(request.getURI());
+    if (request.getAuthenticationScheme() instanceof PreemptiveBasicAuthScheme) {
+      key.append('\n').append(
+          ((PreemptiveBasicAuthScheme) request.getAuthenticationScheme()).generateAuthToken());
+    }
+    String authorization = request.getHeaders().getValue("Authorization");
+    if (authorization != null) {
+      key.append('\n').append(authorization);
+    }
+    return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+  }
+
+  private synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null || dir == null) {
+      return entry;
+    }
+    File file = new File(dir, key + SUFFIX);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      entry = MAPPER.readValue(file, Entry.class);
+      this.keep(key, entry);
+      return entry;
+    } catch (IOException e) {
+      LOG.debug("Ignoring unreadable cache entry {}: {}", file, e.getMessage());
+      return null;
+    }
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    this.keep(key, entry);
+    if (dir == null) {
+      return;
+    }
+    try {
+      // The listings name assemblies, platforms and instances: keep them to the user.
+      StateStore.createDirectories(dir);
+      File tmp = Files.createTempFile(dir.toPath(), key, ".tmp").toFile();
+      StateStore.ownerOnly(tmp);
+      MAPPER.writeValue(tmp, entry);
+      Files.move(tmp.toPath(), new File(dir, key + SUFFIX).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      isDiskUsed = true;
+    } catch (IOException e) {
+      LOG.debug("Cannot write the cache entry {}: {}", key, e.getMessage());
+    }
+  }
+
+  private void keep(String key, Entry entry) {
+    Entry previous = entries.remove(key);
+    if (previous != null) {
+      bytes -= previous.size();
+    }
+    if (entry.size() > maxBytes) {
+      return;
+    }
+    entries.put(key, entry);
+    bytes += entry.size();
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes && eldest.hasNext()) {
+      bytes -= eldest.next().getValue().size();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * One cached listing.
+   */
+  public static class Entry {
+
+    /** The body. */
+    public String body;
+
+    /** The content type. */
+    public String contentType;
+
+    /** The ETag, or null. */
+    public String etag;
+
+    /** The Last-Modified date, or null. */
+    public String lastModified;
+
+    /** When it was fetched or last revalidated. */
+    public long stored;
+
+    boolean hasValidator() {
+      return etag != null || lastModified != null;
+    }
+
+    long size() {
+      return body == null ? 0 : body.length() * 2L;
+    }
+
+    Response toResponse() {
+      return new ResponseBuilder().setStatusCode(200).setStatusLine("HTTP/1.1 200 OK")
+          .setContentType(contentType).setBody(body).build();
+    }
+  }
+}
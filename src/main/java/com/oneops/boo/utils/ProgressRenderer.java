@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.utils;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of concurrent tasks, e.g. one per environment, drawn by a single writer thread so that
+ * the workflow threads never wait for the console.
+ *
+ * <p>
+ * On a terminal the tasks share one status line that is redrawn at most ten times a second. Anywhere
+ * else, e.g. in CI logs, every step is printed as a plain line. With --quiet nothing is printed.
+ */
+public class ProgressRenderer {
+
+  /** Lock for everything that writes to the console while a status line may be showing. */
+  public static final Object CONSOLE = new Object();
+
+  /** Whether the console is a terminal, if set. */
+  public static final String TERMINAL_PROPERTY = "boo.terminal";
+
+  /** The redraw period. */
+  private static final long PERIOD_MILLIS = 100;
+
+  /** Clears the current terminal line. */
+  private static final String CLEAR_LINE = "\r\033[2K";
+
+  /** The renderer whose status line is showing, if any. */
+  private static volatile ProgressRenderer live;
+
+  /** The tasks, in start order. */
+  private final List<Task> tasks = new CopyOnWriteArrayList<Task>();
+
+  /** The step events not printed yet, in plain mode. */
+  private final Queue<String> events = new ConcurrentLinkedQueue<String>();
+
+  /** Whether to redraw a status line rather than print events. */
+  private final boolean isTerminal;
+
+  /** Whether to print nothing at all. */
+  private final boolean isQuiet;
+
+  /** The console. */
+  private final PrintStream out;
+
+  /** Bumped on every change, so that unchanged status lines are not redrawn. */
+  private final AtomicInteger version = new AtomicInteger();
+
+  /** The version on screen. */
+  private int drawn = -1;
+
+  /** The length of the status line on screen, 0 if none. */
+  private int width;
+
+  /** The writer thread, while started. */
+  private volatile ScheduledExecutorService writer;
+
+  /**
+   * Instantiates a renderer for the console, in status line mode on a terminal. The boo.terminal
+   * system property overrides the detection, e.g. for the client of a daemon.
+   *
+   * @param isQuiet whether to print nothing at all
+   */
+  public ProgressRenderer(boolean isQuiet) {
+    this(System.out, Boolean.parseBoolean(System.getProperty(TERMINAL_PROPERTY,
+        String.valueOf(System.console() != null && !"dumb".equals(System.getenv("TERM"))))),
+        isQuiet);
+  }
+
+  /**
+   * Instantiates a new renderer.
+   *
+   * @param out the console
+   * @param isTerminal whether to redraw a status line rather than print events
+   * @param isQuiet whether to print nothing at all
+   */
+  public ProgressRenderer(PrintStream out, boolean isTerminal, boolean isQuiet) {
+    this.out = out;
+    this.isTerminal = isTerminal;
+    this.isQuiet = isQuiet;
+  }
+
+  /**
+   * Starts the writer thread. Does nothing with --quiet.
+   */
+  public synchronized void start() {
+    if (writer != null || isQuiet) {
+      return;
+    }
+    writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "boo-progress");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (isTerminal) {
+      live = this;
+    }
+    writer.scheduleAtFixedRate(this::render, 0, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Draws the final state and stops the writer thread.
+   */
+  public synchronized void stop() {
+    if (writer == null) {
+      return;
+    }
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writer = null;
+    render();
+    synchronized (CONSOLE) {
+      if (live == this) {
+        live = null;
+        if (width > 0) {
+          out.println();
+          width = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a task.
+   *
+   * @param name the task name
+   * @param total the number of steps
+   * @return the task
+   */
+  public Task task(String name, int total) {
+    Task task = new Task(name, total);
+    tasks.add(task);
+    version.incrementAndGet();
+    return task;
+  }
+
+  /**
+   * Gets the tasks.
+   *
+   * @return the tasks, in start order
+   */
+  public List<Task> getTasks() {
+    return new ArrayList<Task>(tasks);
+  }
+
+  /**
+   * Erases the status line so that a log line can be printed in its place. The caller must hold
+   * {@link #CONSOLE}; the status line comes back with the next redraw.
+   */
+  public static void clearStatusLine() {
+    ProgressRenderer renderer = live;
+    if (renderer != null && renderer.width > 0) {
+      renderer.out.print(CLEAR_LINE);
+      renderer.out.flush();
+      renderer.width = 0;
+      renderer.drawn = -1;
+    }
+  }
+
+  /**
+   * Formats the status line of all tasks.
+   *
+   * @return the status line
+   */
+  public String statusLine() {
+    StringBuilder line = new StringBuilder();
+    for (Task task : tasks) {
+      if (line.length() > 0) {
+        line.append("  ");
+      }
+      line.append('[').append(task.toString()).append(']');
+    }
+    return line.toString();
+  }
+
+  private void render() {
+    synchronized (CONSOLE) {
+      if (isTerminal) {
+        int current = version.get();
+        if (current == drawn) {
+          return;
+        }
+        String line = statusLine();
+        out.print(CLEAR_LINE);
+        out.print(line);
+        out.flush();
+        width = line.length();
+        drawn = current;
+      } else {
+        String event;
+        while ((event = events.poll()) != null) {
+          out.println(event);
+        }
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * One task: a name, a step counter and the name of the current step.
+   */
+  public final class Task {
+
+    /** The name. */
+    private final String name;
+
+    /** The steps done. */
+    private final AtomicInteger done = new AtomicInteger();
+
+    /** The number of steps. */
+    private volatile int total;
+
+    /** The current step. */
+    private volatile String step = "waiting";
+
+    Task(String name, int total) {
+      this.name = name;
+      this.total = Math.max(total, 1);
+    }
+
+    /**
+     * Starts the next step.
+     *
+     * @param stepName the step name
+     */
+    public void step(String stepName) {
+      this.step = stepName;
+      changed();
+    }
+
+    /**
+     * Marks one more step as done.
+     */
+    public void advance() {
+      done.updateAndGet(n -> Math.min(n + 1, total));
+      version.incrementAndGet();
+    }
+
+    /**
+     * Marks the task as done.
+     *
+     * @param outcome the outcome, e.g. "done" or "skipped"
+     */
+    public void finish(String outcome) {
+      done.set(total);
+      this.step = outcome;
+      changed();
+    }
+
+    /**
+     * Changes the number of steps, e.g. once it is known.
+     *
+     * @param steps the number of steps
+     */
+    public void setTotal(int steps) {
+      this.total = Math.max(steps, 1);
+      changed();
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getDone() {
+      return done.get();
+    }
+
+    public int getTotal() {
+      return total;
+    }
+
+    public String getStep() {
+      return step;
+    }
+
+    private void changed() {
+      version.incrementAndGet();
+      if (!isTerminal && writer != null) {
+        events.add(toString());
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %s %d/%d", name, step, done.get(), total);
+    }
+  }
+}
@@ -14,12 +14,22 @@
 package com.oneops.boo.workflow;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -27,7 +37,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.Uninterruptibles;
 import com.jayway.restassured.path.json.JsonPath;
 import com.oneops.api.OOInstance;
 import com.oneops.api.exception.OneOpsClientAPIException;
@@ -42,12 +51,20 @@ import com.oneops.api.resource.model.Procedure;
 import com.oneops.api.resource.model.Release;
 import com.oneops.boo.BooConfig;
 import com.oneops.boo.LogUtils;
-import com.oneops.boo.utils.ProgressBar;
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.state.AppliedState;
+import com.oneops.boo.state.RunJournal;
+import com.oneops.boo.state.StateStore;
+import com.oneops.boo.stats.RequestStats;
+import com.oneops.boo.stats.Tracer;
+import com.oneops.boo.stats.Tracer.Span;
+import com.oneops.boo.utils.ProgressRenderer;
 import com.oneops.boo.yaml.AssemblyBean;
 import com.oneops.boo.yaml.CloudBean;
 import com.oneops.boo.yaml.Constants;
 import com.oneops.boo.yaml.EnvironmentBean;
 import com.oneops.boo.yaml.PlatformBean;
+import com.oneops.boo.yaml.ScaleBean;
 import com.oneops.boo.yaml.helper.EnvironmentBeanHelper;
 
 /**
@@ -58,20 +75,42 @@ public abstract class AbstractWorkflow {
   /** The log. */
   private static Logger LOG = LoggerFactory.getLogger(AbstractWorkflow.class);
 
-  /** The pattern. */
-  private static Pattern pattern = Pattern.compile("^-[0-9a-zA-Z]{2,9}$");
+  /** The suffix of the auto generated assembly names. */
+  private static final String AUTO_GEN_SUFFIX = "-[0-9a-zA-Z]{2,9}";
+
+  /** The most environments torn down at the same time. */
+  private static final int MAX_TEARDOWN_THREADS = 8;
+
+  /** Polls without a deployment state before waiting for it is given up. */
+  private static final int MAX_STATE_MISSES = 3;
+
+  /** Cloud ids by endpoint, organization and cloud name, shared by every workflow. */
+  private static final Map<String, Long> CLOUD_IDS = new ConcurrentHashMap<String, Long>();
+
+  /** The default pause that lets OneOps settle after an environment update. */
+  private static final long SETTLE_MILLIS = 1000;
+
+  /** How long the result of a shared read is reused. */
+  private static final long READ_TTL_MILLIS = 2000;
+
+  /** The writes that change environments only, not the assembly and its design. */
+  private static final Set<String> ENVIRONMENT_WRITES = new HashSet<String>(Arrays.asList(
+      "createEnvironment", "updatePlatformCloudScale", "updatePlatformAutoHealingStatus",
+      "updatePlatformAutoReplaceConfig", "updatePlatformRedundancyConfig", "updateRelay",
+      "pullDesign", "commitEnvironment", "deploy", "cancelDeployment", "retryDeployment",
+      "disableAllPlatforms", "executeAction", "deleteEnvironment"));
 
   /** The Assembly Bean */
   AssemblyBean assemblyBean;
   
-  /** The assembly. */
-  Assembly assembly;
+  /** The assembly client, created on first use. */
+  private final LazyClient<Assembly> assembly;
 
-  /** The design. */
-  Design design;
+  /** The design client, created on first use. */
+  private final LazyClient<Design> design;
 
-  /** The transition. */
-  Transition transition;
+  /** The transition client, created on first use. */
+  private final LazyClient<Transition> transition;
 
   /** The config. */
   BooConfig config;
@@ -79,15 +118,55 @@ public abstract class AbstractWorkflow {
   /** The instance. */
   OOInstance instance;
 
-  /** The cloud. */
-  Cloud cloud;
+  /** The cloud client, created on first use. */
+  private final LazyClient<Cloud> cloud;
+
+  /** The progress of the running tasks. */
+  ProgressRenderer progress = new ProgressRenderer(false);
+
+  /** Whether to silence the textual output. */
+  boolean isQuiet = false;
 
-  /** The bar. */
-  ProgressBar bar;
+  /** Whether to commit without deploying. */
+  boolean isNoDeploy = false;
+
+  /** Whether to compare every platform with OneOps instead of the local state. */
+  boolean isVerify = false;
+
+  /** Whether to resume the unfinished run of the same YAML. */
+  boolean isResume = false;
+
+  /** The pause after an environment update; a deployment waits twice as long. */
+  long settleMillis = SETTLE_MILLIS;
 
   /** The comments. */
   String comments = null;
 
+  /** The design changes not committed yet. */
+  final DesignSession designSession = new DesignSession(this);
+
+  /** The local state cache. */
+  StateStore stateStore;
+
+  /** The state last applied to OneOps, as far as this machine knows. */
+  AppliedState appliedState = new AppliedState();
+
+  /** The state the YAML asks for. */
+  AppliedState desiredState;
+
+  /** The steps completed by the current run. */
+  RunJournal journal;
+
+  /** Cancels the command, e.g. on Ctrl-C. */
+  Cancellation cancellation = new Cancellation();
+
+  /** The shared reads of the assembly, its design and the clouds. */
+  final ReadCache reads = new ReadCache(READ_TTL_MILLIS);
+
+  /** The deployments this run started, by environment, in start order. */
+  private final Map<String, Long> deployed =
+      Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
   /**
    * Instantiates a new abstract workflow.
    *
@@ -101,21 +180,214 @@ public abstract class AbstractWorkflow {
     this.instance = instance;
     this.config = config;
     this.assemblyBean = config.getYaml().getAssembly();
-    this.cloud = new Cloud(instance);
-    
     String assemblyName = assemblyBean.getName();
 
-    assembly = new Assembly(instance);
-    design = new Design(instance, assemblyName);
-    transition = new Transition(instance, assemblyName);
-    this.config = config;
+    // Commands such as -l or a missing assembly may never need some of the clients.
+    this.cloud = new LazyClient<Cloud>(() -> new Cloud(instance));
+    this.assembly = new LazyClient<Assembly>(() -> new Assembly(instance));
+    this.design = new LazyClient<Design>(() -> new Design(instance, assemblyName));
+    this.transition = new LazyClient<Transition>(() -> new Transition(instance, assemblyName));
+    stateStore = new StateStore(config.getYaml().getBoo().getOrg(), assemblyName);
+    journal = new RunJournal(stateStore.getDirectory());
 
-    this.bar = new ProgressBar();
     if (!StringUtils.isBlank(comment)) {
       this.comments = comment;
     }
   }
 
+  /**
+   * Sets the quiet.
+   *
+   * @param isQuiet the new quiet
+   */
+  public void setQuiet(boolean isQuiet) {
+    this.isQuiet = isQuiet;
+    this.progress = new ProgressRenderer(isQuiet);
+  }
+
+  /**
+   * Sets the no deploy.
+   *
+   * @param isNoDeploy the new no deploy
+   */
+  public void setNoDeploy(boolean isNoDeploy) {
+    this.isNoDeploy = isNoDeploy;
+  }
+
+  /**
+   * Sets the pause that lets OneOps settle after an environment update, before its design is
+   * pulled; a deployment waits twice as long. Mainly for benchmarks against a mock OneOps.
+   *
+   * @param settleMillis the pause in milliseconds
+   */
+  public void setSettleMillis(long settleMillis) {
+    this.settleMillis = settleMillis;
+  }
+
+  /**
+   * Sets the verify.
+   *
+   * @param isVerify the new verify
+   */
+  public void setVerify(boolean isVerify) {
+    this.isVerify = isVerify;
+  }
+
+  /**
+   * Sets the cancellation of the command.
+   *
+   * @param cancellation the new cancellation
+   */
+  public void setCancellation(Cancellation cancellation) {
+    this.cancellation = cancellation;
+  }
+
+  /**
+   * Gets the cancellation of the command.
+   *
+   * @return the cancellation
+   */
+  public Cancellation getCancellation() {
+    return cancellation;
+  }
+
+  /**
+   * Aborts the run: no new OneOps call starts and the calls in flight are given some time to end.
+   * Optionally, the deployments this run started are then canceled.
+   *
+   * @param cancelDeployments whether to cancel the deployments this run started
+   * @param drainMillis the most time to wait for the calls in flight, in milliseconds
+   */
+  public void abort(boolean cancelDeployments, long drainMillis) {
+    cancellation.cancel();
+    cancellation.drain(drainMillis);
+    if (cancelDeployments) {
+      cancellation.runExempt(() -> {
+        for (String envName : this.getDeployments().keySet()) {
+          LogUtils.info(Constants.CANCEL_DEPLOYMENT, envName);
+          this.cancelDeployment(envName);
+        }
+      });
+    }
+  }
+
+  /**
+   * Sets the resume.
+   *
+   * @param isResume the new resume
+   */
+  public void setResume(boolean isResume) {
+    this.isResume = isResume;
+  }
+
+  /**
+   * Gets the assembly client.
+   *
+   * @return the assembly client
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  Assembly getAssembly() throws OneOpsClientAPIException {
+    return assembly.get();
+  }
+
+  /**
+   * Gets the design client.
+   *
+   * @return the design client
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  Design getDesign() throws OneOpsClientAPIException {
+    return design.get();
+  }
+
+  /**
+   * Gets the transition client.
+   *
+   * @return the transition client
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  Transition getTransition() throws OneOpsClientAPIException {
+    return transition.get();
+  }
+
+  /**
+   * Gets the cloud client.
+   *
+   * @return the cloud client
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  Cloud getCloud() throws OneOpsClientAPIException {
+    return cloud.get();
+  }
+
+  /**
+   * Commits the design changes made so far, in one release.
+   *
+   * @return true, if there were changes to commit
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  public boolean commitDesign() throws OneOpsClientAPIException {
+    return designSession.commit();
+  }
+
+  /**
+   * Calls OneOps, recording the latency and the outcome of the call under the operation name,
+   * and a request span inside the current phase.
+   *
+   * @param operation the operation name
+   * @param call the call
+   * @return the response
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  <T> T call(String operation, OneOpsCall<T> call) throws OneOpsClientAPIException {
+    cancellation.begin();
+    long start = System.nanoTime();
+    boolean failed = true;
+    try (Span span = Tracer.request(operation)) {
+      T response = call.call();
+      failed = false;
+      return response;
+    } finally {
+      RequestStats.record(operation, System.nanoTime() - start, failed);
+      cancellation.end();
+      if (!operation.startsWith("get") && !operation.startsWith("list")
+          && !ENVIRONMENT_WRITES.contains(operation)) {
+        reads.invalidate();
+      }
+    }
+  }
+
+  /**
+   * Reads the assembly, its design or a cloud through a cache: concurrent identical reads share
+   * one request and its result is reused briefly, until the next write. The response must not be
+   * changed by the caller.
+   *
+   * @param <T> the response type
+   * @param operation the operation name
+   * @param key the arguments of the read
+   * @param call the call
+   * @return the response
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  <T> T read(String operation, String key, OneOpsCall<T> call)
+      throws OneOpsClientAPIException {
+    return reads.get(operation + " " + key, () -> call(operation, call));
+  }
+
+  /**
+   * Calls OneOps, recording the latency and the outcome of the call under the operation name.
+   *
+   * @param operation the operation name
+   * @param action the call
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  void call(String operation, OneOpsCall.Action action) throws OneOpsClientAPIException {
+    call(operation, () -> {
+      action.run();
+      return null;
+    });
+  }
+
   /**
    * Process.
    *
@@ -139,41 +411,120 @@ public abstract class AbstractWorkflow {
 		  removeAllEnvs();
 		  while (this.getStatus() != null && this.getStatus().contains("active")) {
 			LogUtils.info("Env deployment still in progress");
-	        TimeUnit.SECONDS.sleep(10);
+	        cancellation.sleep(TimeUnit.SECONDS.toMillis(10));
 	      }
 		  return deleteAssembly();
 	  }
 	  return true;
   }
   /**
-   * Removes the all envs.
+   * Removes the all envs, concurrently: each environment cancels its deployment, deploys with
+   * every platform disabled, waits for that deployment and is then deleted.
    *
-   * @return true, if successful
+   * @return the decommission deployments
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public List<Deployment> removeAllEnvs() throws OneOpsClientAPIException {
-    if (design == null) {
-      return null;
-    }
-    
     List<Deployment> deployments = new ArrayList<>();
     List<String> envList = listEnvs();
-    envList.forEach(env -> {
-    	this.cancelDeployment(env);
-        Deployment deployment = this.disableAllPlatforms(env);
-        if (deployment != null) {
-          deployments.add(deployment);
-        }
+    if (envList.isEmpty()) {
+      return deployments;
+    }
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(envList.size(), MAX_TEARDOWN_THREADS), runnable -> {
+          Thread thread = new Thread(runnable, "boo-teardown");
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      List<Future<Deployment>> results = new ArrayList<Future<Deployment>>();
+      for (String env : envList) {
+        results.add(executor.submit(() -> {
+          cancellation.attach(Thread.currentThread());
+          try {
+            return this.removeEnv(env);
+          } finally {
+            cancellation.detach(Thread.currentThread());
+          }
+        }));
+      }
+      for (Future<Deployment> result : results) {
         try {
-          transition.deleteEnvironment(env);
-        } catch (Exception e) {
-          // Do nothing
+          Deployment deployment = result.get();
+          if (deployment != null) {
+            deployments.add(deployment);
+          }
+        } catch (ExecutionException e) {
+          LOG.warn("Environment teardown failed", e.getCause());
         }
-    });
-   	
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancellation.check();
+    } finally {
+      executor.shutdownNow();
+    }
     return deployments;
   }
 
+  /**
+   * Removes one environment once its decommission deployment is done.
+   *
+   * @param env the env name
+   * @return the decommission deployment, or null if none was started
+   * @throws InterruptedException if interrupted while waiting for the deployment
+   */
+  private Deployment removeEnv(String env) throws InterruptedException {
+    this.cancelDeployment(env);
+    Deployment deployment = this.disableAllPlatforms(env);
+    if (deployment != null) {
+      String state = this.awaitDeployment(env);
+      if (!"complete".equals(state)) {
+        LogUtils.error(Constants.DECOMMISSION_NOT_COMPLETE, env, state);
+        return deployment;
+      }
+    }
+    try {
+      call("deleteEnvironment", () -> getTransition().deleteEnvironment(env));
+      LogUtils.info(Constants.DESTROY_ENVIRONMENT, env);
+    } catch (Exception e) {
+      LogUtils.error(Constants.DELETE_ENVIRONMENT_ERROR, env, e.getMessage());
+    }
+    return deployment;
+  }
+
+  /**
+   * Waits for the latest deployment of an environment to be complete, failed or canceled, polling
+   * less often while nothing changes.
+   *
+   * @param env the env name
+   * @return the final state, or {@link DeploymentWatcher#UNKNOWN} if it cannot be read
+   * @throws InterruptedException if interrupted while waiting
+   */
+  String awaitDeployment(String env) throws InterruptedException {
+    long interval = DeploymentWatcher.MIN_INTERVAL_MILLIS;
+    String previous = null;
+    int misses = 0;
+    while (true) {
+      String state = this.getLatestDeploymentState(env);
+      if (state == null) {
+        if (++misses >= MAX_STATE_MISSES) {
+          return DeploymentWatcher.UNKNOWN;
+        }
+      } else {
+        misses = 0;
+        state = state.toLowerCase();
+        if (DeploymentWatcher.TERMINAL.contains(state)) {
+          return state;
+        }
+        interval = state.equals(previous) ? Math.min(interval * 2,
+            DeploymentWatcher.MAX_INTERVAL_MILLIS) : DeploymentWatcher.MIN_INTERVAL_MILLIS;
+        previous = state;
+      }
+      cancellation.sleep(interval);
+    }
+  }
+
   /**
    * Removes the all platforms.
    *
@@ -181,13 +532,10 @@ public abstract class AbstractWorkflow {
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public boolean removeAllPlatforms() throws OneOpsClientAPIException {
-    if (design == null) {
-      return true;
-    }
     boolean isSuc = true;
     for (String platformName : this.listPlatforms()) {
       try {
-        design.deletePlatform(platformName);
+        call("deletePlatform", () -> getDesign().deletePlatform(platformName));
       } catch (Exception e) {
         // Do nothing
         isSuc = false;
@@ -215,7 +563,7 @@ public abstract class AbstractWorkflow {
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public List<String> listEnvs() throws OneOpsClientAPIException {
-    List<CiResource> response = transition.listEnvironments();
+    List<CiResource> response = call("listEnvironments", () -> getTransition().listEnvironments());
     List<String> envs = Lists.newArrayList();
     for(CiResource resource : response) {
     	envs.add(resource.getCiName());
@@ -230,7 +578,8 @@ public abstract class AbstractWorkflow {
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public List<String> listPlatforms() throws OneOpsClientAPIException {
-    List<CiResource> response = design.listPlatforms();
+    List<CiResource> response =
+        read("listPlatforms", "", () -> getDesign().listPlatforms());
     List<String> platforms = Lists.newArrayList();
     for(CiResource resource : response) {
     	platforms.add(resource.getCiName());
@@ -257,9 +606,9 @@ public abstract class AbstractWorkflow {
    */
   private boolean deleteAssembly(String assemblyName) throws OneOpsClientAPIException {
     // Don't add the following part to one try block as transition.
-    assembly.deleteAssembly(assemblyName);
+    call("deleteAssembly", () -> getAssembly().deleteAssembly(assemblyName));
+    stateStore.clear();
     LogUtils.info(Constants.DESTROY_ASSEMBLY, assemblyName);
-    assembly = null;
     return true;
   }
 
@@ -270,7 +619,7 @@ public abstract class AbstractWorkflow {
    * @throws OneOpsClientAPIException the one ops client API exception
    */
 	public List<String> getAssemblies() throws OneOpsClientAPIException {
-		List<CiResource> response = assembly.listAssemblies();
+		List<CiResource> response = call("listAssemblies", () -> getAssembly().listAssemblies());
 		List<String> assemblies = Lists.newArrayList();
 		for (CiResource resource : response) {
 			assemblies.add(resource.getCiName());
@@ -288,7 +637,7 @@ public abstract class AbstractWorkflow {
    */
   public List<String> listAttachments(String platformName, String componentName)
       throws OneOpsClientAPIException {
-    List<CiResource> response = design.listPlatformComponentAttachments(platformName, componentName);
+    List<CiResource> response = call("listPlatformComponentAttachments", () -> getDesign().listPlatformComponentAttachments(platformName, componentName));
     List<String> names = new ArrayList<String>();
     for (CiResource ciResource : response) {
     	names.add(ciResource.getCiName());
@@ -309,7 +658,8 @@ public abstract class AbstractWorkflow {
   public boolean addAttachment(String platformName, String componentName, String uniqueName,
       Map<String, String> attributes) throws OneOpsClientAPIException {
 	  
-    design.addNewAttachment(platformName, componentName, uniqueName, attributes);
+    call("addNewAttachment", () -> getDesign().addNewAttachment(platformName, componentName, uniqueName, attributes));
+    designSession.record(platformName, "attachment " + uniqueName);
     return true;
   }
 
@@ -325,7 +675,8 @@ public abstract class AbstractWorkflow {
    */
   public boolean updateAttachment(String platformName, String componentName, String uniqueName,
       Map<String, String> attributes) throws OneOpsClientAPIException {
-    design.updatePlatformComponentAttachment(platformName, componentName, uniqueName, attributes);
+    call("updatePlatformComponentAttachment", () -> getDesign().updatePlatformComponentAttachment(platformName, componentName, uniqueName, attributes));
+    designSession.record(platformName, "attachment " + uniqueName);
     return true;
   }
 
@@ -342,7 +693,7 @@ public abstract class AbstractWorkflow {
     boolean isExist = true;
     CiResource response = null;
     try {
-      response = design.getPlatformComponentAttachment(platformName, componentName, attachmentName);
+      response = call("getPlatformComponentAttachment", () -> getDesign().getPlatformComponentAttachment(platformName, componentName, attachmentName));
     } catch (Exception e) {
       isExist = false;
     }
@@ -355,7 +706,9 @@ public abstract class AbstractWorkflow {
    */
   public boolean isUserCustomizedComponent(String platformName, String componentName)
       throws OneOpsClientAPIException {
-    CiResource componentDetails = design.getPlatformComponent(platformName, componentName);
+    CiResource componentDetails = read("getPlatformComponent",
+        platformName + " " + componentName,
+        () -> getDesign().getPlatformComponent(platformName, componentName));
     if(componentDetails != null && componentDetails.getAttrProps() != null 
     		&& componentDetails.getAttrProps().getAdditionalProperties() != null 
     		&& componentDetails.getAttrProps().getAdditionalProperties().get(Constants.OWNER) != null) {
@@ -373,7 +726,7 @@ public abstract class AbstractWorkflow {
    */
   public boolean isUserCustomizedVariable(String platformName, String variableName)
       throws OneOpsClientAPIException {
-    CiResource variableDetails = design.getPlatformVariable(platformName, variableName);
+    CiResource variableDetails = call("getPlatformVariable", () -> getDesign().getPlatformVariable(platformName, variableName));
     if(variableDetails != null && variableDetails.getAttrProps() != null 
     		&& variableDetails.getAttrProps().getAdditionalProperties() != null 
     		&& variableDetails.getAttrProps().getAdditionalProperties().get(Constants.OWNER) != null) {
@@ -396,16 +749,19 @@ public abstract class AbstractWorkflow {
   boolean cancelDeployment(String envName) {
     boolean isSuc = false;
     try {
-      Deployment response = transition.getLatestDeployment(envName);
+      Deployment response = call("getLatestDeployment", () -> getTransition().getLatestDeployment(envName));
+      if (response == null || response.getDeploymentState() == null || DeploymentWatcher.TERMINAL
+          .contains(response.getDeploymentState().toLowerCase())) {
+        // Nothing to cancel
+        return true;
+      }
       Long deploymentId = response.getDeploymentId();
-      Release release = transition.getLatestRelease(envName);
+      Release release = call("getLatestRelease", () -> getTransition().getLatestRelease(envName));
       Long releaseId = release.getReleaseId();
       if (LOG.isDebugEnabled()) {
         LOG.debug("deploymentId:" + deploymentId + "; releaseId: " + releaseId);
       }
-      response = transition.getDeploymentStatus(envName, deploymentId);
-      Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
-      response = transition.cancelDeployment(envName, deploymentId, releaseId);
+      response = call("cancelDeployment", () -> getTransition().cancelDeployment(envName, deploymentId, releaseId));
       if (LOG.isDebugEnabled()) {
         LOG.debug("Cancel deployment: " + (response == null ? "" : response.getComments()));
       }
@@ -427,18 +783,19 @@ public abstract class AbstractWorkflow {
 	public Deployment retryDeployment(String envName) {
         long deploymentId = 0;
 		try {
-			Deployment response = transition.getLatestDeployment(envName);
+			Deployment response = call("getLatestDeployment", () -> getTransition().getLatestDeployment(envName));
 			deploymentId = response.getDeploymentId();
-			Release release = transition.getLatestRelease(envName);
+			Release release = call("getLatestRelease", () -> getTransition().getLatestRelease(envName));
 			Long releaseId = release.getReleaseId();
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("deploymentId:" + deploymentId + "; releaseId: " + releaseId);
 			}
-			response = transition.getDeploymentStatus(envName, deploymentId);
+			long latestId = deploymentId;
+			response = call("getDeploymentStatus", () -> getTransition().getDeploymentStatus(envName, latestId));
 			if(response != null && "complete".equalsIgnoreCase(response.getDeploymentState())) {
 				LOG.info("Deployment already completed");
 			} else {
-				response = transition.retryDeployment(envName, deploymentId, releaseId);
+				response = call("retryDeployment", () -> getTransition().retryDeployment(envName, latestId, releaseId));
 				if (LOG.isDebugEnabled()) {
 					LOG.debug("Retry deployment: " + (response == null ? "" : response.getComments()));
 				}
@@ -458,12 +815,12 @@ public abstract class AbstractWorkflow {
    */
   Deployment disableAllPlatforms(String envName) {
     try {
-      transition.disableAllPlatforms(envName);
-      transition.commitEnvironment(envName, null, "Clean up " + envName);
+      call("disableAllPlatforms", () -> getTransition().disableAllPlatforms(envName));
+      call("commitEnvironment", () -> getTransition().commitEnvironment(envName, null, "Clean up " + envName));
       if (StringUtils.isBlank(this.comments)) {
-        return transition.deploy(envName, Constants.CLEANUP_DESCRIPTION);
+        return call("deploy", () -> getTransition().deploy(envName, Constants.CLEANUP_DESCRIPTION));
       } else {
-        return transition.deploy(envName, comments);
+        return call("deploy", () -> getTransition().deploy(envName, comments));
       }
     } catch (Exception e) {
       // Ignore
@@ -482,11 +839,11 @@ public abstract class AbstractWorkflow {
       if (LOG.isDebugEnabled()) {
         LOG.debug("deleteEnvironment log:" + (response == null ? "" : response.getReleaseState()));
       }
-      response = design.commitDesign();
+      response = call("commitDesign", () -> getDesign().commitDesign());
       if (LOG.isDebugEnabled()) {
         LOG.debug("commitDesign log:" + (response == null ? "" : response.getReleaseState()));
       }
-      design.deletePlatform(platformName);
+      call("deletePlatform", () -> getDesign().deletePlatform(platformName));
     } catch (Exception e) {
       // Ignore
       e.printStackTrace();
@@ -511,7 +868,8 @@ public abstract class AbstractWorkflow {
   public boolean isAssemblyExist(String assemblyName) {
     CiResource response = null;
     try {
-      response = assembly.getAssembly(assemblyName);
+      response = read("getAssembly", assemblyName,
+          () -> getAssembly().getAssembly(assemblyName));
     } catch (OneOpsClientAPIException e) {
       // String msg = String.format("The assembly %s is not exist!", assemblyName);
       // System.err.println(msg);
@@ -531,7 +889,7 @@ public abstract class AbstractWorkflow {
   public List<String> listActions(String envName, String platformName, String componentName)
       throws OneOpsClientAPIException {
 	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    JsonPath response = op.listActions(platformName, componentName);
+    JsonPath response = call("listActions", () -> op.listActions(platformName, componentName));
     return response.getList("actionName");
   }
   
@@ -556,7 +914,7 @@ public abstract class AbstractWorkflow {
 	}
 	  
     Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    JsonPath response = op.listActions(platformName, componentName);
+    JsonPath response = call("listActions", () -> op.listActions(platformName, componentName));
     return response.getList("actionName");
   }
 
@@ -570,16 +928,34 @@ public abstract class AbstractWorkflow {
    */
   public Map<String, Long> listInstancesMap(String envName, String platformName, String componentName)
       throws OneOpsClientAPIException {
-	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    List<CiResource> response = op.listInstances(platformName, componentName);
     Map<String, Long> map = new HashMap<String, Long>();
-    for (CiResource ciResource : response) {
-		map.put(ciResource.getCiName(), ciResource.getCiId());
-	}
-    
+    this.forEachInstance(envName, platformName, componentName,
+        (name, id, privateIp) -> map.put(name, id));
     return map;
   }
 
+  /**
+   * Passes the name, id and private IP of each instance of a component to a visitor, without
+   * copying the instances into lists or maps first.
+   *
+   * @param envName the env name
+   * @param platformName the platform name
+   * @param componentName the component name
+   * @param visitor the visitor
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  public void forEachInstance(String envName, String platformName, String componentName,
+      InstanceVisitor visitor) throws OneOpsClientAPIException {
+    Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
+    List<CiResource> response =
+        call("listInstances", () -> op.listInstances(platformName, componentName));
+    for (CiResource ciResource : response) {
+      Object privateIp = ciResource.getCiAttributes() == null ? null
+          : ciResource.getCiAttributes().getAdditionalProperties().get(Constants.PRIVATE_IP);
+      visitor.visit(ciResource.getCiName(), ciResource.getCiId(), privateIp);
+    }
+  }
+
   /**
    * List instances.
    *
@@ -590,13 +966,9 @@ public abstract class AbstractWorkflow {
    */
   public List<String> listInstances(String envName, String platformName, String componentName)
       throws OneOpsClientAPIException {
-	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    List<CiResource> response = op.listInstances(platformName, componentName);
     List<String> names = new ArrayList<String>();
-    for (CiResource ciResource : response) {
-		names.add(ciResource.getCiName());
-	}
-   
+    this.forEachInstance(envName, platformName, componentName,
+        (name, id, privateIp) -> names.add(name));
     return names;
   }
   
@@ -619,14 +991,7 @@ public abstract class AbstractWorkflow {
 	if(envName == null) {
 		throw new OneOpsClientAPIException("No valid environment found!!!");
 	}
-	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    List<CiResource> response = op.listInstances(platformName, componentName);
-    List<String> names = new ArrayList<String>();
-    for (CiResource ciResource : response) {
-		names.add(ciResource.getCiName());
-	}
-   
-    return names;
+    return this.listInstances(envName, platformName, componentName);
   }
 
   /**
@@ -638,7 +1003,7 @@ public abstract class AbstractWorkflow {
    */
   public String getProcedureStatus(String envName, Long procedureId) throws OneOpsClientAPIException {
 	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    Procedure response = op.getProcedureStatus(procedureId);
+    Procedure response = call("getProcedureStatus", () -> op.getProcedureStatus(procedureId));
     return response.getProcedureState();
   }
 
@@ -652,13 +1017,10 @@ public abstract class AbstractWorkflow {
    */
   private List<Long> listInstanceIds(String envName, String platformName, String componentName)
       throws OneOpsClientAPIException {
-	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    List<CiResource> response = op.listInstances(platformName, componentName);
-    List<Long> Ids = new ArrayList<Long>();
-    for (CiResource ciResource : response) {
-    	Ids.add(ciResource.getCiId());
-	}
-    return Ids;
+    List<Long> ids = new ArrayList<Long>();
+    this.forEachInstance(envName, platformName, componentName,
+        (name, id, privateIp) -> ids.add(id));
+    return ids;
   }
 
   /**
@@ -686,8 +1048,9 @@ public abstract class AbstractWorkflow {
       }
     }
     Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    Procedure response =
-        op.executeAction(platformName, componentName, actionName, list, arglist, rollAt);
+    List<Long> ids = list;
+    Procedure response = call("executeAction",
+        () -> op.executeAction(platformName, componentName, actionName, ids, arglist, rollAt));
     return response == null ? null : response.getProcedureId();
   }
 
@@ -700,7 +1063,7 @@ public abstract class AbstractWorkflow {
   public boolean isPlatformsExist() {
     List<CiResource> response = null;
     try {
-      response = design.listPlatforms();
+      response = read("listPlatforms", "", () -> getDesign().listPlatforms());
     } catch (OneOpsClientAPIException e) {
       // String msg = String.format("The assembly %s is not exist!", assemblyName);
       // System.err.println(msg);
@@ -718,7 +1081,8 @@ public abstract class AbstractWorkflow {
   public boolean platformExist(String platformName) {
     CiResource response = null;
     try {
-      response = design.getPlatform(platformName);
+      response = read("getPlatform", platformName,
+          () -> getDesign().getPlatform(platformName));
     } catch (OneOpsClientAPIException e) {
       // Ignore
     }
@@ -736,7 +1100,7 @@ public abstract class AbstractWorkflow {
     if (!isExist) {
       this.checkAssemblyName();
       LOG.debug("creating assembly {} with tags: {}", assemblyBean.getName(), assemblyBean.getTags());
-      assembly.createAssembly(assemblyBean.getName(), config.getYaml().getBoo().getEmail(), "", assemblyBean.getDescription(), assemblyBean.getTags());
+      call("createAssembly", () -> getAssembly().createAssembly(assemblyBean.getName(), config.getYaml().getBoo().getEmail(), "", assemblyBean.getDescription(), assemblyBean.getTags()));
     }
     return true;
   }
@@ -748,25 +1112,48 @@ public abstract class AbstractWorkflow {
     if (this.assemblyBean.getName().length() > 32) {
       System.err.println();
       System.err.println(Constants.ASSEMBLY_NAME_TOO_LONG);
-      System.exit(3);
+      throw new BooExitException(3);
     }
   }
 
   /**
-   * Checks if is match.
+   * Gets the pattern of the names auto generated for a prefix, compiled once per listing.
    *
-   * @param str the str
    * @param prefix the prefix
-   * @return true, if is match
+   * @return the pattern
    */
-  private boolean isMatch(String str, String prefix) {
-    if (str.startsWith(prefix)) {
-      Matcher matcher = pattern.matcher(str.substring(prefix.length()));
-      if (matcher.matches()) {
-        return true;
+  public static Pattern autoGenPattern(String prefix) {
+    return Pattern.compile(Pattern.quote(prefix) + AUTO_GEN_SUFFIX);
+  }
+
+  /**
+   * Passes each assembly auto generated for a prefix to an action as soon as it is matched,
+   * without collecting the names of the organization first.
+   *
+   * @param prefix the prefix
+   * @param action the action
+   */
+  public void forEachAutoGenAssembly(String prefix, Consumer<String> action) {
+    if (!config.getYaml().getAssembly().getAutoGen()) {
+      if (this.isAssemblyExist(prefix)) {
+        action.accept(prefix);
       }
+      return;
+    }
+    try {
+      Pattern autoGen = autoGenPattern(prefix);
+      List<CiResource> response = call("listAssemblies", () -> getAssembly().listAssemblies());
+      for (CiResource resource : response) {
+        String assembly = resource.getCiName();
+        // Only match auto generated string.
+        if (assembly != null && assembly.startsWith(prefix)
+            && autoGen.matcher(assembly).matches()) {
+          action.accept(assembly);
+        }
+      }
+    } catch (Exception e) {
+      System.err.println(e.getMessage());
     }
-    return false;
   }
 
   /**
@@ -776,31 +1163,9 @@ public abstract class AbstractWorkflow {
    * @return the all auto gen assemblies
    */
   public List<String> getAllAutoGenAssemblies(String prefix) {
-
-    if (config.getYaml().getAssembly().getAutoGen()) {
-      try {
-        List<String> assemblies = this.getAssemblies();
-        if (assemblies != null && assemblies.size() > 0) {
-          List<String> matches = new ArrayList<String>();
-          for (String assembly : assemblies) {
-            // Only match auto generated string.
-            if (this.isMatch(assembly, prefix)) {
-              matches.add(assembly);
-            }
-          }
-          return matches;
-        }
-      } catch (Exception e) {
-        System.err.println(e.getMessage());
-      }
-    } else {
-      List<String> matches = new ArrayList<String>();
-      if (this.isAssemblyExist(prefix)) {
-        matches.add(prefix);
-      }
-      return matches;
-    }
-    return null;
+    List<String> matches = new ArrayList<String>();
+    this.forEachAutoGenAssembly(prefix, matches::add);
+    return matches;
   }
 
   /**
@@ -812,7 +1177,7 @@ public abstract class AbstractWorkflow {
   public boolean isEnvExist(String envName) {
     CiResource response = null;
     try {
-      response = transition.getEnvironment(envName);
+      response = call("getEnvironment", () -> getTransition().getEnvironment(envName));
     } catch (OneOpsClientAPIException e) {
       if (LOG.isDebugEnabled()) {
         LOG.debug(Constants.ENV_NOT_EXISTING, envName, e.getMessage());
@@ -847,16 +1212,16 @@ public abstract class AbstractWorkflow {
         cloudMaps.put(String.valueOf(getCloudId(cloud.getCloudName())), cloudMap);
       }
 
-      response = transition.createEnvironment(envName,
+      response = call("createEnvironment", () -> getTransition().createEnvironment(envName,
     		  environmentBean.getOthers().get(Constants.ENV_PROFILE),
           environmentBean.getOthers(), null, cloudMaps,
-          Constants.DESCRIPTION);
+          Constants.DESCRIPTION));
       
-      response = transition.getEnvironment(envName);
+      response = call("getEnvironment", () -> getTransition().getEnvironment(envName));
       if (StringUtils.isBlank(this.comments)) {
-        transition.commitEnvironment(envName, null, Constants.DESCRIPTION);
+        call("commitEnvironment", () -> getTransition().commitEnvironment(envName, null, Constants.DESCRIPTION));
       } else {
-        transition.commitEnvironment(envName, null, comments);
+        call("commitEnvironment", () -> getTransition().commitEnvironment(envName, null, comments));
       }
 
     } else {
@@ -882,8 +1247,8 @@ public abstract class AbstractWorkflow {
       Map<String, Object> map = platform.getComponents();
       if (map != null) {
         for (Map.Entry<String, Object> entry : map.entrySet()) {
-          transition.updatePlatformComponent(environmentBean.getEnvName(), platform.getName(), entry.getKey(),
-              (Map<String, String>) entry.getValue());
+          call("updatePlatformComponent", () -> getTransition().updatePlatformComponent(environmentBean.getEnvName(), platform.getName(), entry.getKey(),
+              (Map<String, String>) entry.getValue()));
         }
       }
     }
@@ -897,9 +1262,13 @@ public abstract class AbstractWorkflow {
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public boolean updatePlatformCloudScale(EnvironmentBean environmentBean) throws OneOpsClientAPIException {
+    if (this.isEnvironmentUnchanged(environmentBean.getEnvName())) {
+      LogUtils.info(Constants.ENV_UNCHANGED, environmentBean.getEnvName());
+      return true;
+    }
     for (PlatformBean platform : this.config.getYaml().getPlatformsList()) {
       if (this.platformExist(platform.getName())) {
-        CiResource environment = transition.getEnvironment(environmentBean.getEnvName());
+        CiResource environment = call("getEnvironment", () -> getTransition().getEnvironment(environmentBean.getEnvName()));
         @SuppressWarnings("unchecked")
 		Map<String, Object> sysClouds = (Map<String, Object>) environment.getAdditionalProperties().get(Constants.CLOUDS);
         List<CloudBean> clouds = environmentBean.getClouds();
@@ -911,8 +1280,8 @@ public abstract class AbstractWorkflow {
             cloudMap.put(EnvironmentBeanHelper.PRIORITY, cloud.getPriority());
             cloudMap.put(EnvironmentBeanHelper.DPMT_ORDER, cloud.getDpmtOrder());
             cloudMap.put(EnvironmentBeanHelper.PCT_SCALE, cloud.getPctScale());
-            transition.updatePlatformCloudScale(environmentBean.getEnvName(), platform.getName(),
-                String.valueOf(getCloudId(cloud.getCloudName())), cloudMap);
+            call("updatePlatformCloudScale", () -> getTransition().updatePlatformCloudScale(environmentBean.getEnvName(), platform.getName(),
+                String.valueOf(getCloudId(cloud.getCloudName())), cloudMap));
             // If cloud exists in yaml, remove the cloud name from the system clouds map after
             // updating cloud.
             sysClouds.remove(cloudId);
@@ -922,7 +1291,7 @@ public abstract class AbstractWorkflow {
         for (String cloud : sysClouds.keySet()) {
           Map<String, String> cloudMap = new HashMap<String, String>();
           cloudMap.put(EnvironmentBeanHelper.ADMINSTATUS, Constants.OFFLINE);
-          transition.updatePlatformCloudScale(environmentBean.getEnvName(), platform.getName(), cloud, cloudMap);
+          call("updatePlatformCloudScale", () -> getTransition().updatePlatformCloudScale(environmentBean.getEnvName(), platform.getName(), cloud, cloudMap));
         }
       }
     }
@@ -949,7 +1318,7 @@ public abstract class AbstractWorkflow {
         int repairCount = -1, repairTime = -1;
         for(Entry<String, Object> entry : platform.getAutoHealing().entrySet()) {
         	if(entry.getKey().startsWith("auto")) {
-        		op.updatePlatformAutoHealingStatus(environmentBean.getEnvName(), platform.getName(), entry.getKey(), (Boolean)entry.getValue());
+        		call("updatePlatformAutoHealingStatus", () -> op.updatePlatformAutoHealingStatus(environmentBean.getEnvName(), platform.getName(), entry.getKey(), (Boolean)entry.getValue()));
         	}
         	if(PlatformBean.REPLACE_AFTER_MINUTES.equals(entry.getKey())) {
         		repairTime = (Integer)entry.getValue();
@@ -959,20 +1328,54 @@ public abstract class AbstractWorkflow {
         	}
         }
         if(repairCount != -1 && repairTime != -1) {
-        	op.updatePlatformAutoReplaceConfig(environmentBean.getEnvName(), platform.getName(), repairCount, repairTime);
+        	int count = repairCount;
+        	int time = repairTime;
+        	call("updatePlatformAutoReplaceConfig", () -> op.updatePlatformAutoReplaceConfig(environmentBean.getEnvName(), platform.getName(), count, time));
         }
       }
     }
     return true;
   }
   
+  /**
+   * Checks if the platform was applied by an earlier run exactly as the YAML describes it now.
+   *
+   * @param platformName the platform name
+   * @return true, if the platform can be skipped
+   */
+  boolean isPlatformUnchanged(String platformName) {
+    return desiredState != null && appliedState.isPlatformUnchanged(desiredState, platformName);
+  }
+
+  /**
+   * Checks if the environment cloud map was applied by an earlier run exactly as the YAML
+   * describes it now.
+   *
+   * @param envName the env name
+   * @return true, if the cloud map update can be skipped
+   */
+  boolean isEnvironmentUnchanged(String envName) {
+    return desiredState != null && appliedState.isEnvironmentUnchanged(desiredState, envName);
+  }
+
+  /**
+   * Checks if the scale of a platform component was applied to the environment as desired.
+   *
+   * @param envName the env name
+   * @param scale the scale
+   * @return true, if unchanged
+   */
+  boolean isScaleUnchanged(String envName, ScaleBean scale) {
+    return desiredState != null && appliedState.isScaleUnchanged(desiredState, envName, scale);
+  }
+
   /**
    * Pull design.
    *
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public void pullDesign(String envName) throws OneOpsClientAPIException {
-    transition.pullDesign(envName);
+    call("pullDesign", () -> getTransition().pullDesign(envName));
   }
 
   /**
@@ -984,9 +1387,9 @@ public abstract class AbstractWorkflow {
   public boolean commitEnv(String envName) throws OneOpsClientAPIException {
     Release response;
     if (StringUtils.isBlank(this.comments)) {
-      response = transition.commitEnvironment(envName, null, Constants.DESCRIPTION);
+      response = call("commitEnvironment", () -> getTransition().commitEnvironment(envName, null, Constants.DESCRIPTION));
     } else {
-      response = transition.commitEnvironment(envName, null, comments);
+      response = call("commitEnvironment", () -> getTransition().commitEnvironment(envName, null, comments));
     }
     return response == null ? false : true;
   }
@@ -1001,16 +1404,30 @@ public abstract class AbstractWorkflow {
     Deployment response;
     if (StringUtils.isBlank(this.comments)) {
       if (isUpdate) {
-        response = transition.deploy(envName, Constants.UPDATE_DESCRIPTION);
+        response = call("deploy", () -> getTransition().deploy(envName, Constants.UPDATE_DESCRIPTION));
       } else {
-        response = transition.deploy(envName, Constants.CREATE_DESCRIPTION);
+        response = call("deploy", () -> getTransition().deploy(envName, Constants.CREATE_DESCRIPTION));
       }
     } else {
-      response = transition.deploy(envName, comments);
+      response = call("deploy", () -> getTransition().deploy(envName, comments));
+    }
+    if (response != null) {
+      deployed.put(envName, response.getDeploymentId());
     }
     return response;
   }
 
+  /**
+   * Gets the deployments this run started.
+   *
+   * @return the deployment ids, by environment, in start order
+   */
+  public Map<String, Long> getDeployments() {
+    synchronized (deployed) {
+      return new LinkedHashMap<String, Long>(deployed);
+    }
+  }
+
 
   /**
    * Get ip address from oneops operate.
@@ -1023,7 +1440,7 @@ public abstract class AbstractWorkflow {
   public List<Map<String, Object>> getIpsInternal(String envName, String platformName, String componentName)
       throws OneOpsClientAPIException {
 	Operation op = new Operation(instance, this.assemblyBean.getName(), envName);
-    List<CiResource> response = op.listInstances(platformName, componentName);
+    List<CiResource> response = call("listInstances", () -> op.listInstances(platformName, componentName));
     List<Map<String, Object>> attrList = new ArrayList<Map<String, Object>>();
     for (CiResource ciResource : response) {
     	attrList.add(ciResource.getCiAttributes().getAdditionalProperties());
@@ -1039,8 +1456,15 @@ public abstract class AbstractWorkflow {
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public Long getCloudId(String cloudName) throws OneOpsClientAPIException {
-    CiResource response = cloud.getCloud(cloudName);
-    return response.getCiId();
+    String key = instance.getEndpoint() + " " + instance.getOrgname() + " " + cloudName;
+    Long id = CLOUD_IDS.get(key);
+    if (id == null) {
+      CiResource response =
+          read("getCloud", cloudName, () -> getCloud().getCloud(cloudName));
+      id = response.getCiId();
+      CLOUD_IDS.put(key, id);
+    }
+    return id;
   }
 
   /**
@@ -1051,7 +1475,7 @@ public abstract class AbstractWorkflow {
   Long getDeploymentId(String envName) {
 	  Long id = null;
     try {
-      Deployment latestDeployment = transition.getLatestDeployment(envName);
+      Deployment latestDeployment = call("getLatestDeployment", () -> getTransition().getLatestDeployment(envName));
       id = latestDeployment.getDeploymentId();
     } catch (OneOpsClientAPIException e) {
       // Ignore
@@ -1067,7 +1491,7 @@ public abstract class AbstractWorkflow {
   public String getStatus(String envName) {
     String status = null;
     try {
-      Deployment response = transition.getDeploymentStatus(envName, this.getDeploymentId(envName));
+      Deployment response = call("getDeploymentStatus", () -> getTransition().getDeploymentStatus(envName, this.getDeploymentId(envName)));
       status = response.getDeploymentState();
     } catch (OneOpsClientAPIException e) {
       // Ignore
@@ -1075,6 +1499,41 @@ public abstract class AbstractWorkflow {
     return status;
   }
   
+  /**
+   * Gets the state of the latest deployment with a single request, for polling.
+   *
+   * @param envName the env name
+   * @return the state, or null if there is no deployment or it cannot be read
+   */
+  public String getLatestDeploymentState(String envName) {
+    try {
+      Deployment latest = call("getLatestDeployment", () -> getTransition().getLatestDeployment(envName));
+      return latest == null ? null : latest.getDeploymentState();
+    } catch (OneOpsClientAPIException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the state of a deployment with a single request, for polling.
+   *
+   * @param envName the env name
+   * @param deploymentId the deployment id, or null for the latest deployment
+   * @return the state, or null if the deployment cannot be read
+   */
+  public String getDeploymentState(String envName, Long deploymentId) {
+    if (deploymentId == null) {
+      return this.getLatestDeploymentState(envName);
+    }
+    try {
+      Deployment deployment = call("getDeploymentStatus",
+          () -> getTransition().getDeploymentStatus(envName, deploymentId));
+      return deployment == null ? null : deployment.getDeploymentState();
+    } catch (OneOpsClientAPIException e) {
+      return null;
+    }
+  }
+
   /**
    * Gets the status.
    *
@@ -1084,7 +1543,7 @@ public abstract class AbstractWorkflow {
     StringBuilder sb = new StringBuilder();
     for(EnvironmentBean eb : this.config.getYaml().getEnvironmentList()) {
     	try {
-    	      Deployment response = transition.getDeploymentStatus(eb.getEnvName(), this.getDeploymentId(eb.getEnvName()));
+    	      Deployment response = call("getDeploymentStatus", () -> getTransition().getDeploymentStatus(eb.getEnvName(), this.getDeploymentId(eb.getEnvName())));
     	      String status = response.getDeploymentState();
     	      sb.append("\n").append(eb.getEnvName()).append(" deployment status:").append(status);
     	    } catch (OneOpsClientAPIException e) {
@@ -13,6 +13,7 @@
  */
 package com.oneops.boo.workflow;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -21,8 +22,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,14 +38,21 @@ import com.oneops.api.exception.OneOpsClientAPIException;
 import com.oneops.api.resource.model.CiResource;
 import com.oneops.api.resource.model.Deployment;
 import com.oneops.api.resource.model.RedundancyConfig;
-import com.oneops.boo.BooCli;
 import com.oneops.boo.BooConfig;
 import com.oneops.boo.LogUtils;
-import com.oneops.boo.utils.BooUtils;
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.state.AppliedState;
+import com.oneops.boo.stats.Tracer;
+import com.oneops.boo.stats.Tracer.Span;
+import com.oneops.boo.utils.ProgressRenderer.Task;
+import com.oneops.boo.workflow.Cancellation.Phase;
 import com.oneops.boo.yaml.Constants;
 import com.oneops.boo.yaml.EnvironmentBean;
 import com.oneops.boo.yaml.PlatformBean;
+import com.oneops.boo.yaml.RolloutWaveBean;
 import com.oneops.boo.yaml.ScaleBean;
+import com.oneops.boo.yaml.helper.ContentHashHelper;
+import com.oneops.boo.yaml.helper.EnvironmentBeanHelper;
 import com.oneops.client.api.exception.OneOpsComponentExistException;
 
 
@@ -55,18 +68,30 @@ public class BuildAllPlatforms extends AbstractWorkflow {
   /** The Constant FAILED. */
   private static final String FAILED = "failed";
 
+  /** The most scales of an environment sent at the same time. */
+  private static final int MAX_SCALE_THREADS = 8;
+
+  /** The steps of an environment: create, update, commit and deploy. */
+  private static final int ENV_STEPS = 4;
+
+  /** The steps of a created platform: create and components. */
+  private static final int PLATFORM_STEPS = 2;
+
+  /** The journal step of the committed design. */
+  private static final String DESIGN_STEP = "design";
+
   /** The Constant NEWLINE. */
   private static final String NEWLINE = System.getProperty("line.separator");
 
-  /** The utils. */
-  private final BooUtils utils = new BooUtils();
-
   /** The retries. */
   private int retries = 6;
 
   //
   private int numOfThreads = 32;
 
+  /** The progress of the platforms, by platform name. */
+  private final Map<String, Task> platformTasks = new ConcurrentHashMap<String, Task>();
+
   /**
    * Instantiates a new builds the all platforms.
    *
@@ -94,102 +119,275 @@ public class BuildAllPlatforms extends AbstractWorkflow {
     if (isUpdate && !isAssemblyExist) {
       throw new OneOpsClientAPIException(this.assemblyBean.getName() + " not exists!");
     }
-    if (!config.getYaml().getAssembly().getAutoGen()) {
-      if (!isUpdate && isAssemblyExist) {
+    // Only the unfinished create of this YAML may continue on the assembly it created.
+    boolean isCreated =
+        !config.getYaml().getAssembly().getAutoGen() && !isUpdate && isAssemblyExist;
+    if (isCreated && !isResume) {
+      throw new OneOpsClientAPIException(this.assemblyBean.getName() + " already exists!");
+    }
+    try (Span process = Tracer.start((isUpdate ? "update " : "create ") + assemblyBean.getName())) {
+      // Hash the YAML before the workflow consumes the attachments out of the component maps.
+      this.desiredState = AppliedState.of(config.getYaml(), stateStore.getKey());
+      if (isUpdate && !isVerify) {
+        this.appliedState = stateStore.load();
+      }
+      journal.start(ContentHashHelper.hash(desiredState), isResume);
+      if (isCreated && !journal.isResumed()) {
+        journal.finish(false);
         throw new OneOpsClientAPIException(this.assemblyBean.getName() + " already exists!");
       }
+      if (journal.isResumed()) {
+        LogUtils.info(Constants.RESUME_RUN, journal.size());
+        // The design release the failed run left open has to be committed.
+        designSession.record(assemblyBean.getName(), "resumed run");
+      }
+      List<EnvironmentBean> environmentList = config.getYaml().getEnvironmentList();
+      Task design = progress.task(assemblyBean.getName(), isUpdate ? 4 : 3);
+      Map<String, Task> envTasks = new HashMap<String, Task>();
+      for (EnvironmentBean eb : environmentList) {
+        envTasks.put(eb.getEnvName(), progress.task(eb.getEnvName(), ENV_STEPS));
+      }
+      progress.start();
+      boolean isCompleted = false;
+      try {
+        try (Phase phase = cancellation.phase(isUpdate ? "update" : "create")) {
+          design.step("assembly");
+          try (Span span = Tracer.start("assembly")) {
+            this.createAssemblyIfNotExist();
+          }
+          design.advance();
+          if (journal.isDone(DESIGN_STEP)) {
+            LogUtils.info(Constants.RESUME_SKIPPED, DESIGN_STEP);
+            design.finish("resumed");
+          } else {
+            design.step("platforms");
+            try (Span span = Tracer.start("platforms")) {
+              this.createPlatforms(isUpdate);
+            }
+            design.advance();
+            if (isUpdate) {
+              design.step("components");
+              try (Span span = Tracer.start("components")) {
+                this.updatePlatformComponents();
+              }
+              design.advance();
+            }
+            design.step("variables");
+            try (Span span = Tracer.start("variables")) {
+              this.updatePlatformVariables(isUpdate);
+              this.commitDesign();
+              this.appliedState.putPlatforms(desiredState);
+              stateStore.save(appliedState);
+            }
+            journal.record(DESIGN_STEP);
+            journal.sync();
+            design.finish("done");
+          }
+        }
+
+        Map<String, EnvironmentBean> envs = new HashMap<String, EnvironmentBean>();
+        for (EnvironmentBean eb : environmentList) {
+          envs.put(eb.getEnvName(), eb);
+        }
+        List<RolloutWaveBean> waves = config.getYaml().getRolloutWaves();
+        List<Deployment> deployments = new ArrayList<>();
+        try (Phase phase = cancellation.phase("deploy")) {
+          for (int i = 0; i < waves.size(); i++) {
+            RolloutWaveBean wave = waves.get(i);
+            try (Span span = Tracer.start("wave " + wave.getName(), process)) {
+              deployments.addAll(this.rollOut(wave, envs, envTasks, isUpdate, span));
+              journal.sync();
+              if (i < waves.size() - 1) {
+                this.passGate(wave);
+              }
+            }
+          }
+        }
+        isCompleted = true;
+        return deployments;
+      } finally {
+        journal.finish(isCompleted);
+        progress.stop();
+      }
     }
-    this.bar.update(1, 100);
-    this.createAssemblyIfNotExist();
-    this.bar.update(5, 100);
-    this.createPlatforms(isUpdate);
-    this.bar.update(15, 100);
-    if (isUpdate) {
-      this.updatePlatformComponents();
-    }
-    this.updatePlatformVariables(isUpdate);
-    this.bar.update(20, 100);
-    
-    List<EnvironmentBean> environmentList = config.getYaml().getEnvironmentList();
-	List<Deployment> deployments = new ArrayList<>();
-	AtomicInteger progress = new AtomicInteger(1);
-	environmentList.parallelStream().parallel().forEach(eb -> {
-		progress.incrementAndGet();
-		Deployment deployment = envProccessing(eb, progress, isUpdate);
-		deployments.add(deployment);
-	});
-	
-	return deployments;
   }
 
-  Deployment envProccessing(EnvironmentBean eb, AtomicInteger progress, boolean isUpdate) {
-	try {
-    this.createEnv(eb);
-    this.bar.update(30 + progress.get(), 100);
-    if (isUpdate) {
-      this.updatePlatformCloudScale(eb);
-    }
-    this.updateEnv(eb);
-    this.bar.update(40 + progress.get(), 100);
-    utils.waitTimeout(1);
-    if (isUpdate) {
-      try {
-        this.pullDesign(eb.getEnvName());
-      } catch (Exception e) {
-        // Ignore
-        // e.printStackTrace();
+  /**
+   * Deploys the environments of a rollout wave, at most {@link RolloutWaveBean#getParallel()} at
+   * the same time.
+   *
+   * @param wave the wave
+   * @param envs the environments, by name
+   * @param envTasks the progress of the environments, by name
+   * @param isUpdate the is update
+   * @param parent the span of the wave
+   * @return the deployments started
+   */
+  private List<Deployment> rollOut(RolloutWaveBean wave, Map<String, EnvironmentBean> envs,
+      Map<String, Task> envTasks, boolean isUpdate, Span parent) {
+    for (String envName : wave.getEnvironments()) {
+      if (!envs.containsKey(envName)) {
+        LogUtils.error(Constants.ROLLOUT_UNKNOWN_ENV, wave.getName(), envName);
+        throw new BooExitException(Constants.EXIT_PARSE_ERROR);
       }
     }
-    this.bar.update(50 + progress.get(), 100);
-    String status = this.getStatus(eb.getEnvName());
-    if (ACTIVE.equalsIgnoreCase(status)) {
-      LogUtils.info(Constants.ACTIVE_DEPLOYMENT_EXISTING);
-      return null;
+    int size = wave.getEnvironments().size();
+    int parallel = wave.getParallel() > 0 ? Math.min(wave.getParallel(), size) : size;
+    ExecutorService executor = Executors.newFixedThreadPool(parallel, runnable -> {
+      Thread thread = new Thread(runnable, "boo-rollout");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<Future<Deployment>> results = new ArrayList<Future<Deployment>>();
+      for (String envName : wave.getEnvironments()) {
+        EnvironmentBean eb = envs.get(envName);
+        results.add(executor.submit(() -> {
+          cancellation.attach(Thread.currentThread());
+          try (Span span = Tracer.start("env " + envName, parent)) {
+            return envProccessing(eb, envTasks.get(envName), isUpdate);
+          } finally {
+            cancellation.detach(Thread.currentThread());
+          }
+        }));
+      }
+      List<Deployment> deployments = new ArrayList<Deployment>();
+      for (Future<Deployment> result : results) {
+        try {
+          deployments.add(result.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw new RuntimeException(e.getCause());
+        }
+      }
+      return deployments;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BooExitException(cancellation.getExitCode());
+    } finally {
+      executor.shutdownNow();
     }
+  }
 
-    if (FAILED.equalsIgnoreCase(status)) {
-      LogUtils.info(Constants.FAIL_DEPLOYMENT_EXISTING);
+  /**
+   * Waits for the deployments of a rollout wave to be complete and runs its health procedure in
+   * every environment of the wave, before the next wave starts.
+   *
+   * @param wave the wave
+   * @throws BooExitException if a deployment or a health procedure did not complete
+   */
+  private void passGate(RolloutWaveBean wave) {
+    if (isNoDeploy) {
+      return;
+    }
+    LogUtils.info(Constants.ROLLOUT_GATE, wave.getName());
+    // The watcher prints directly, after what the wave logged.
+    LogUtils.flush();
+    PrintStream out = isQuiet ? new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM) : System.out;
+    int exit;
+    try (Span span = Tracer.start("gate " + wave.getName())) {
+      exit = new DeploymentWatcher(wave.getEnvironments(), this::getLatestDeploymentState, out)
+          .watch();
+      if (exit == Constants.EXIT_NORMAL && wave.hasGateProcedure()) {
+        for (String envName : wave.getEnvironments()) {
+          if (!this.runHealthProcedure(wave, envName)) {
+            exit = Constants.EXIT_NOT_COMPLETE;
+            break;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      exit = cancellation.getExitCode();
+    }
+    if (exit != Constants.EXIT_NORMAL) {
+      LogUtils.error(Constants.ROLLOUT_HALTED, wave.getName());
+      throw new BooExitException(exit);
+    }
+  }
+
+  /**
+   * Runs the health procedure of a rollout wave in an environment and waits for it.
+   *
+   * @param wave the wave
+   * @param envName the env name
+   * @return true, if the procedure completed
+   */
+  private boolean runHealthProcedure(RolloutWaveBean wave, String envName) {
+    try {
+      Long procedureId = this.executeAction(envName, wave.getGatePlatform(),
+          wave.getGateComponent(), wave.getGateAction(), wave.getGateArguments(), null, 100);
+      if (procedureId == null) {
+        return false;
+      }
+      String state = "active";
+      while ("active".equalsIgnoreCase(state) || "pending".equalsIgnoreCase(state)) {
+        cancellation.sleep(DeploymentWatcher.MIN_INTERVAL_MILLIS);
+        state = this.getProcedureStatus(envName, procedureId);
+      }
+      LogUtils.info(Constants.ROLLOUT_PROCEDURE, wave.getGateAction(), envName, state);
+      return "complete".equalsIgnoreCase(state);
+    } catch (OneOpsClientAPIException e) {
+      LogUtils.error(Constants.ROLLOUT_PROCEDURE, wave.getGateAction(), envName, e.getMessage());
+      return false;
+    }
+  }
+
+  Deployment envProccessing(EnvironmentBean eb, Task task, boolean isUpdate) {
+	try {
+    String committed = "env " + eb.getEnvName() + " committed";
+    String deployed = "env " + eb.getEnvName() + " deployed";
+    if (journal.isDone(deployed)) {
+      LogUtils.info(Constants.RESUME_SKIPPED, deployed);
+      task.finish("resumed");
       return null;
     }
-    this.updateScaling(eb);
-    this.updatePlatformHealingOptions(eb);
-    this.bar.update(70 + progress.get(), 100);
-    
-    // Added retries
-    boolean retry = true;
-    String deployError = null;
-    this.relayEnableDelivery(eb.getEnvName(), config.getYaml().getBoo().isEnable());
-    this.commitEnv(eb.getEnvName());
-    
-    if (BooCli.isNoDeploy()) {
-      this.bar.update(100, 100);
+    if (journal.isDone(committed)) {
+      LogUtils.info(Constants.RESUME_SKIPPED, committed);
+      task.advance();
+      task.advance();
+      task.advance();
+    } else if (!this.applyEnv(eb, task, isUpdate)) {
+      return null;
+    } else {
+      journal.record(committed);
+    }
+    if (isNoDeploy) {
+      task.finish("committed");
       LogUtils.info(Constants.CREATE_WITHOUT_DEPLOYMENT);
       return null;
     }
+    // Added retries
+    boolean retry = true;
+    String deployError = null;
     LogUtils.info(Constants.START_DEPLOYMENT);
     Deployment deployment = null;
-    while (retry && retries > 0) {
-      utils.waitTimeout(2);
-      try {
-        deployment = this.deploy(eb.getEnvName(), isUpdate);
-        retry = false;
-      } catch (Exception e) {
-        deployError = e.getMessage();
-        retries--;
+    task.step("deploy");
+    try (Span span = Tracer.start("deploy")) {
+      while (retry && retries > 0) {
+        cancellation.sleep(2 * settleMillis);
+        try {
+          deployment = this.deploy(eb.getEnvName(), isUpdate);
+          retry = false;
+        } catch (Exception e) {
+          deployError = e.getMessage();
+          retries--;
+        }
       }
     }
-    this.bar.update(100, 100);
+    task.finish(retry ? FAILED : "deploying");
     if (!retry) { // If no error for deployment.
+      journal.record(deployed);
       LogUtils.info(Constants.DEPLOYMENT_RUNNING);
       return deployment;
     } else {
       if (deployError != null && deployError.contains(Constants.NO_DEPLOYMENT)) {
-        System.out.printf(Constants.NO_NEED_DEPLOY);
+        LogUtils.info(Constants.NO_NEED_DEPLOY);
       } else {
-        System.err.printf(Constants.DEPLOYMENT_FAILED, deployError);
+        LogUtils.error(Constants.DEPLOYMENT_FAILED, deployError);
       }
-
-      System.out.println();
     }
 	} catch(OneOpsClientAPIException e) {
 		throw new RuntimeException(e);
@@ -197,6 +395,65 @@ public class BuildAllPlatforms extends AbstractWorkflow {
     return null;
   }
 
+  /**
+   * Creates or updates an environment and commits it.
+   *
+   * @param eb the environment
+   * @param task the progress of the environment
+   * @param isUpdate the is update
+   * @return false, if a deployment of the environment is already active or failed
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  private boolean applyEnv(EnvironmentBean eb, Task task, boolean isUpdate)
+      throws OneOpsClientAPIException {
+    task.step("create");
+    try (Span span = Tracer.start("create")) {
+      this.createEnv(eb);
+    }
+    task.advance();
+    task.step("update");
+    try (Span span = Tracer.start("update")) {
+      if (isUpdate) {
+        this.updatePlatformCloudScale(eb);
+      }
+      this.updateEnv(eb);
+      cancellation.sleep(settleMillis);
+      if (isUpdate) {
+        try {
+          this.pullDesign(eb.getEnvName());
+        } catch (Exception e) {
+          // Ignore
+          // e.printStackTrace();
+        }
+      }
+      String status = this.getStatus(eb.getEnvName());
+      if (ACTIVE.equalsIgnoreCase(status)) {
+        task.finish(ACTIVE);
+        LogUtils.info(Constants.ACTIVE_DEPLOYMENT_EXISTING);
+        return false;
+      }
+
+      if (FAILED.equalsIgnoreCase(status)) {
+        task.finish(FAILED);
+        LogUtils.info(Constants.FAIL_DEPLOYMENT_EXISTING);
+        return false;
+      }
+      // Committed with the rest of the environment below.
+      this.setScaling(eb);
+      this.updatePlatformHealingOptions(eb);
+      this.relayEnableDelivery(eb.getEnvName(), config.getYaml().getBoo().isEnable());
+    }
+    task.advance();
+    task.step("commit");
+    try (Span span = Tracer.start("commit")) {
+      this.commitEnv(eb.getEnvName());
+      this.appliedState.putEnvironment(desiredState, eb.getEnvName());
+      stateStore.save(appliedState);
+    }
+    task.advance();
+    return true;
+  }
+
   /**
    * Relay enable delivery.
    *
@@ -205,10 +462,10 @@ public class BuildAllPlatforms extends AbstractWorkflow {
    */
   public boolean relayEnableDelivery(String envName, boolean enable) {
     try {
-      transition.updateRelay(envName, "default", null, null, null, null, null, false, enable);
+      call("updateRelay", () -> getTransition().updateRelay(envName, "default", null, null, null, null, null, false, enable));
       return Boolean.TRUE;
     } catch (OneOpsClientAPIException e) {
-      System.err.println("Cannot update relay!");
+      LogUtils.error(Constants.RELAY_UPDATE_FAILED);
     }
     return Boolean.FALSE;
   }
@@ -225,7 +482,8 @@ public class BuildAllPlatforms extends AbstractWorkflow {
       throws OneOpsClientAPIException, OneOpsComponentExistException {
     CiResource response = null;
     try {
-      response = design.getPlatform(platformName);
+      response = read("getPlatform", platformName,
+          () -> getDesign().getPlatform(platformName));
     } catch (OneOpsClientAPIException e) {
       String msg = String.format("The platform %s is not exist!", platformName);
       throw new OneOpsComponentExistException(msg);
@@ -245,12 +503,41 @@ public class BuildAllPlatforms extends AbstractWorkflow {
   public boolean createPlatforms(boolean isUpdate) throws OneOpsClientAPIException {
     List<PlatformBean> platforms = this.config.getYaml().getPlatformsList();
     Collections.sort(platforms);
+    int wave = platforms.isEmpty() ? 0 : platforms.get(0).getDeployOrder();
     for (PlatformBean platform : platforms) {
+      if (platform.getDeployOrder() != wave) {
+        wave = platform.getDeployOrder();
+        if (this.isLinkedToPending(platforms, wave)) {
+          this.commitDesign();
+        }
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Platform {} fingerprint {}", platform.getName(), platform.getFingerprint());
+      }
+      // An update also removes the components that left the YAML, see updatePlatformComponents.
+      Task task = this.platformTask(platform.getName(), PLATFORM_STEPS + (isUpdate ? 1 : 0));
+      if (isUpdate && this.isPlatformUnchanged(platform.getName())) {
+        LogUtils.info(Constants.PLATFORM_UNCHANGED, platform.getName());
+        task.finish("unchanged");
+        continue;
+      }
+      String step = "platform " + platform.getName();
+      if (journal.isDone(step)) {
+        LogUtils.info(Constants.RESUME_SKIPPED, step);
+        // Created by the failed run, but maybe not committed yet.
+        designSession.record(platform.getName(), "resumed");
+        task.finish("resumed");
+        continue;
+      }
       LogUtils.info(Constants.CREATING_PLATFORM, platform.getName());
+      task.step("create");
       this.createPlatform(platform);
+      task.advance();
       if (platform.getComponents() == null) {
+        task.finish("done");
         continue;
       }
+      task.step("components");
       for (Map.Entry<String, Object> entry : platform.getComponents().entrySet()) {
         String componentName = entry.getKey();
         Object value = entry.getValue();
@@ -265,12 +552,51 @@ public class BuildAllPlatforms extends AbstractWorkflow {
         }
       }
       if(platform.getLinks() != null && platform.getLinks().size() > 0) {
-    	  design.updatePlatformLinks(platform.getName(), platform.getLinks());
+    	  call("updatePlatformLinks", () -> getDesign().updatePlatformLinks(platform.getName(), platform.getLinks()));
+    	  designSession.record(platform.getName(), "links");
+      }
+      journal.record(step);
+      task.advance();
+      if (!isUpdate) {
+        task.finish("done");
       }
     }
     return true;
   }
 
+  /**
+   * Gets the progress of a platform, adding it on first use.
+   *
+   * @param platformName the platform name
+   * @param steps the number of steps
+   * @return the task
+   */
+  private Task platformTask(String platformName, int steps) {
+    return platformTasks.computeIfAbsent(platformName, name -> progress.task(name, steps));
+  }
+
+  /**
+   * Checks whether a platform of a deploy order wave links to a platform with uncommitted changes,
+   * which have to be committed first.
+   *
+   * @param platforms the platforms
+   * @param wave the deploy order
+   * @return true, if it does
+   */
+  private boolean isLinkedToPending(List<PlatformBean> platforms, int wave) {
+    for (PlatformBean platform : platforms) {
+      if (platform.getDeployOrder() != wave || platform.getLinks() == null) {
+        continue;
+      }
+      for (String link : platform.getLinks()) {
+        if (designSession.isPending(link)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   /**
    * We tolerate that if update attachment failed, won't stop the whole process.
    * 
@@ -343,7 +669,8 @@ public class BuildAllPlatforms extends AbstractWorkflow {
 					att.put(uniqueName, attr);
 					this.updateComponentVariables(platformName, componentName, att);
 				}
-	        	design.addNewAttachment(platformName, uniqueName, attachment, attributes);
+	        	call("addNewAttachment", () -> getDesign().addNewAttachment(platformName, uniqueName, attachment, attributes));
+	        	designSession.record(platformName, "attachment " + attachment);
 //	          this.addAttachment(platformName, uniqueName, attachment, attributes);
 	        }
 	      }
@@ -366,10 +693,10 @@ public class BuildAllPlatforms extends AbstractWorkflow {
     }
     if (!isExist) {
       CiResource response =
-          design.createPlatform(platform.getName(), platform.getPack(), platform.getPackVersion(),
-              platform.getPackSource(), Constants.DESCRIPTION, Constants.DESCRIPTION);
+          call("createPlatform", () -> getDesign().createPlatform(platform.getName(), platform.getPack(), platform.getPackVersion(),
+              platform.getPackSource(), Constants.DESCRIPTION, Constants.DESCRIPTION));
       if (response != null) {
-        design.commitDesign();
+        designSession.record(platform.getName(), "platform");
       }
       LogUtils.info(Constants.CREATING_PLATFORM_SUCCEED, platform.getName());
     } else {
@@ -392,7 +719,8 @@ public class BuildAllPlatforms extends AbstractWorkflow {
       throws OneOpsClientAPIException, OneOpsComponentExistException {
     boolean isExist = false;
     try {
-      design.getPlatformComponent(platformName, componentName);
+      read("getPlatformComponent", platformName + " " + componentName,
+          () -> getDesign().getPlatformComponent(platformName, componentName));
       isExist = true;
     } catch (OneOpsClientAPIException e) {
       // e.printStackTrace();
@@ -403,7 +731,7 @@ public class BuildAllPlatforms extends AbstractWorkflow {
 
 
   /**
-   * Update platform variables.
+   * Update platform variables. The changes are committed by {@link #commitDesign()}.
    *
    * @param isUpdate the is update
    * @return true, if successful
@@ -412,6 +740,9 @@ public class BuildAllPlatforms extends AbstractWorkflow {
   public boolean updatePlatformVariables(boolean isUpdate) throws OneOpsClientAPIException {
     List<PlatformBean> platforms = this.config.getYaml().getPlatformsList();
     for (PlatformBean platform : platforms) {
+      if (isUpdate && this.isPlatformUnchanged(platform.getName())) {
+        continue;
+      }
       Map<String, String> secureVariables = platform.getSecureVariables();
       Set<String> yamlVarSet = new HashSet<String>();
       if (secureVariables != null && secureVariables.size() > 0) {
@@ -430,17 +761,15 @@ public class BuildAllPlatforms extends AbstractWorkflow {
         }
       }
 
-      List<CiResource> response = design.listPlatformVariables(platform.getName());
+      List<CiResource> response = call("listPlatformVariables", () -> getDesign().listPlatformVariables(platform.getName()));
 //      List<String> servVarList = response.getList(Constants.CINAME);
       for (CiResource resource : response) {
         if (!yamlVarSet.contains(resource.getCiName()) && isUserCustomizedVariable(platform.getName(), resource.getCiName())) {
-          design.deletePlatformVariable(platform.getName(), resource.getCiName());
+          call("deletePlatformVariable", () -> getDesign().deletePlatformVariable(platform.getName(), resource.getCiName()));
+          designSession.record(platform.getName(), "variable " + resource.getCiName());
         }
       }
     }
-    if (platforms.size() > 0) {
-      design.commitDesign();
-    }
     return true;
   }
 
@@ -481,7 +810,8 @@ public class BuildAllPlatforms extends AbstractWorkflow {
   private void updateOrAddPlatformVariablesIntl(String platformName, Map<String, String> variables,
       boolean isSecure, boolean isUpdate) throws OneOpsClientAPIException {
 	  for (Entry<String, String> entry : variables.entrySet()) {
-		  design.updateOrAddPlatformVariables(platformName, entry.getKey(), entry.getValue(), isSecure);
+		  call("updateOrAddPlatformVariables", () -> getDesign().updateOrAddPlatformVariables(platformName, entry.getKey(), entry.getValue(), isSecure));
+		  designSession.record(platformName, "variable " + entry.getKey());
 	}
    
   }
@@ -534,11 +864,11 @@ public class BuildAllPlatforms extends AbstractWorkflow {
       isExist = Boolean.FALSE;
     }
     if (isExist) {
-      design.updatePlatformComponent(platformName, uniqueName, attributes);
+      call("updatePlatformComponent", () -> getDesign().updatePlatformComponent(platformName, uniqueName, attributes));
     } else {
-      design.addPlatformComponent(platformName, componentName, uniqueName, attributes);
+      call("addPlatformComponent", () -> getDesign().addPlatformComponent(platformName, componentName, uniqueName, attributes));
     }
-    // design.commitDesign();
+    designSession.record(platformName, "component " + uniqueName);
     return true;
   }
 
@@ -552,76 +882,146 @@ public class BuildAllPlatforms extends AbstractWorkflow {
    */
   public String printIps(String envName, String platformName, String componentName)
       throws OneOpsClientAPIException {
-    List<Map<String, Object>> ips = this.getIpsInternal(envName, platformName, componentName);
     StringBuilder str = new StringBuilder();
-    for (Map<String, Object> ip : ips) {
-      str.append(ip.get(Constants.PRIVATE_IP));
-      str.append(NEWLINE);
-    }
+    this.forEachInstance(envName, platformName, componentName,
+        (name, id, privateIp) -> str.append(privateIp).append(NEWLINE));
     return str.toString();
   }
 
   /**
-   * Update scaling.
+   * Prints the ips as they are read, one per line.
+   *
+   * @param envName the env name
+   * @param platformName the platform name
+   * @param componentName the component name
+   * @param out the stream
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  public void printIps(String envName, String platformName, String componentName,
+      PrintStream out) throws OneOpsClientAPIException {
+    this.forEachInstance(envName, platformName, componentName,
+        (name, id, privateIp) -> out.println(privateIp));
+  }
+
+  /**
+   * Update scaling and commit the environment, if any scale changed.
    *
    * @return true, if successful
    * @throws OneOpsClientAPIException the one ops client API exception
    */
   public boolean updateScaling(String envName) throws OneOpsClientAPIException {
-    List<ScaleBean> scales = this.config.getYaml().getScales();
-    if (scales == null) {
+    for (EnvironmentBean eb : config.getYaml().getEnvironmentList()) {
+      if (envName.equals(eb.getEnvName())) {
+        return this.updateScaling(eb);
+      }
+    }
+    EnvironmentBean eb = new EnvironmentBean();
+    eb.setEnvName(envName);
+    return this.updateScaling(eb);
+  }
+
+  /**
+   * Update scaling and commit the environment, if any scale changed.
+   *
+   * @param eb the environment
+   * @return true, if successful
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  public boolean updateScaling(EnvironmentBean eb) throws OneOpsClientAPIException {
+    if (!this.setScaling(eb)) {
       return false;
     }
-    for (ScaleBean scale : scales) {
-      RedundancyConfig config = new RedundancyConfig();
-      config.setCurrent(scale.getCurrent());
-      config.setMin(scale.getMin());
-      config.setMax(scale.getMax());
-      config.setPercentDeploy(scale.getPercentDeploy());
-      LogUtils.info(Constants.COMPUTE_SIZE, envName, scale.getPlatform());
-      transition.updatePlatformRedundancyConfig(envName, scale.getPlatform(), scale.getComponent(), config);
-    }
-    if (StringUtils.isBlank(this.comments)) {
-      transition.commitEnvironment(envName, null, Constants.DESCRIPTION);
-    } else {
-      transition.commitEnvironment(envName, null, comments);
+    this.commitEnv(eb.getEnvName());
+    // Outside of a run, there is no desired state to record.
+    if (desiredState != null) {
+      this.appliedState.putScales(desiredState, eb.getEnvName());
+      stateStore.save(appliedState);
     }
     return true;
   }
-  
-  public boolean updateScaling(EnvironmentBean eb) throws OneOpsClientAPIException {
-	  List<ScaleBean> scales = this.config.getYaml().getScales(); 
-      if (scales != null) { // do this for backward compatibility
-    	return updateScaling(eb.getEnvName()); //this method should be removed eventually
-      } 
-	  
-	List<PlatformBean> platformsList = eb.getPlatformsList();
-    if(platformsList == null || platformsList.size() == 0) {
-    	return false;
-    }
-    
+
+  /**
+   * Sends the scales of the environment that changed since they were last applied, concurrently,
+   * without committing the environment. The scale section applies to every environment, and the
+   * scale of a platform in the environment overrides it.
+   *
+   * @param eb the environment
+   * @return true, if any scale was sent
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  private boolean setScaling(EnvironmentBean eb) throws OneOpsClientAPIException {
     String envName = eb.getEnvName();
-    for(PlatformBean p : platformsList) {
-      ScaleBean scale = p.getScale();
-	  if(scale != null) {
-		RedundancyConfig config = new RedundancyConfig();
-	    config.setCurrent(scale.getCurrent());
-	    config.setMin(scale.getMin());
-	    config.setMax(scale.getMax());
-	    config.setPercentDeploy(scale.getPercentDeploy());
-	    LogUtils.info(Constants.COMPUTE_SIZE, envName, scale.getPlatform());
-	    transition.updatePlatformRedundancyConfig(envName, p.getName(), scale.getComponent(), config);
-	  }
+    List<ScaleBean> changed = new ArrayList<ScaleBean>();
+    for (ScaleBean scale : EnvironmentBeanHelper.getScales(config.getYaml().getScales(), eb)) {
+      if (!isVerify && this.isScaleUnchanged(envName, scale)) {
+        LogUtils.info(Constants.SCALE_UNCHANGED, envName, scale.getPlatform());
+      } else {
+        changed.add(scale);
+      }
     }
-	   
-    if (StringUtils.isBlank(this.comments)) {
-      transition.commitEnvironment(envName, null, Constants.DESCRIPTION);
-    } else {
-      transition.commitEnvironment(envName, null, comments);
+    if (changed.isEmpty()) {
+      return false;
+    }
+    Span parent = Tracer.current();
+    ExecutorService executor = Executors
+        .newFixedThreadPool(Math.min(changed.size(), MAX_SCALE_THREADS), runnable -> {
+          Thread thread = new Thread(runnable, "boo-scale");
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (ScaleBean scale : changed) {
+        results.add(executor.submit(() -> {
+          cancellation.attach(Thread.currentThread());
+          try (Span span = Tracer.start("scale " + scale.getPlatform(), parent)) {
+            this.setScale(envName, scale);
+            return null;
+          } finally {
+            cancellation.detach(Thread.currentThread());
+          }
+        }));
+      }
+      for (Future<?> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof OneOpsClientAPIException) {
+            throw (OneOpsClientAPIException) e.getCause();
+          }
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BooExitException(cancellation.getExitCode());
+    } finally {
+      executor.shutdownNow();
     }
     return true;
   }
 
+  /**
+   * Sends the scale of one platform of an environment.
+   *
+   * @param envName the env name
+   * @param scale the scale
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  private void setScale(String envName, ScaleBean scale) throws OneOpsClientAPIException {
+    RedundancyConfig config = new RedundancyConfig();
+    config.setCurrent(scale.getCurrent());
+    config.setMin(scale.getMin());
+    config.setMax(scale.getMax());
+    config.setPercentDeploy(scale.getPercentDeploy());
+    LogUtils.info(Constants.COMPUTE_SIZE, envName, scale.getPlatform());
+    call("updatePlatformRedundancyConfig", () -> getTransition()
+        .updatePlatformRedundancyConfig(envName, scale.getPlatform(), scale.getComponent(), config));
+  }
+
   /**
    * Update User related Component.
    *
@@ -633,9 +1033,11 @@ public class BuildAllPlatforms extends AbstractWorkflow {
     List<PlatformBean> platforms = this.config.getYaml().getPlatformsList();
     for (PlatformBean platform : platforms) {
       Map<String, Object> yamlComponents = platform.getComponents();
-      if (yamlComponents == null) {
+      if (yamlComponents == null || this.isPlatformUnchanged(platform.getName())) {
         continue;
       }
+      Task task = this.platformTask(platform.getName(), PLATFORM_STEPS + 1);
+      task.step("cleanup");
       Set<String> yamlCompSet = new HashSet<String>();
       for (Map.Entry<String, Object> entry : yamlComponents.entrySet()) {
         yamlCompSet.add(entry.getKey());
@@ -645,18 +1047,20 @@ public class BuildAllPlatforms extends AbstractWorkflow {
           yamlCompSet.addAll(target.keySet());
         }
       }
-      List<CiResource> response = design.listPlatformComponents(platform.getName());
+      List<CiResource> response = call("listPlatformComponents", () -> getDesign().listPlatformComponents(platform.getName()));
       for (CiResource resource : response) {
         if (this.isUserCustomizedComponent(platform.getName(), resource.getCiName())
             && !yamlCompSet.contains(resource.getCiName())) {
-          design.deletePlatformComponent(platform.getName(), resource.getCiName());
+          call("deletePlatformComponent", () -> getDesign().deletePlatformComponent(platform.getName(), resource.getCiName()));
+          designSession.record(platform.getName(), "component " + resource.getCiName());
         }
       }
+      task.finish("done");
     }
     return true;
   }
 
   public Deployment getDeployment(String envName, Long deploymentId) throws OneOpsClientAPIException {
-    return transition.getDeploymentStatus(envName, deploymentId);
+    return call("getDeploymentStatus", () -> getTransition().getDeploymentStatus(envName, deploymentId));
   }
 }
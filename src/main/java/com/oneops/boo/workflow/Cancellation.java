@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.oneops.boo.LogUtils;
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * Cancels a running command, e.g. on Ctrl-C or when it runs out of time. Once canceled, no new
+ * OneOps call starts, every wait ends at once and the threads working for the command are
+ * interrupted; each one then ends with {@link #getExitCode()}. The calls already sent can be
+ * drained before the JVM exits.
+ *
+ * <p>The command runs in phases, see {@link #phase(String)}. A phase with a budget, or the whole
+ * command with a timeout, cancels the command with {@link Constants#EXIT_TIMEOUT} once it runs
+ * over, naming the phase that overran.
+ */
+public class Cancellation {
+
+  /** The phase outside of any other. */
+  private static final String RUN = "run";
+
+  /** Counted down once canceled. */
+  private final CountDownLatch canceled = new CountDownLatch(1);
+
+  /** The threads interrupted on cancel. */
+  private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+  /** Whether the current thread may still call OneOps after the cancel, to clean up. */
+  private final ThreadLocal<Boolean> isExempt = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+  /** The budget per phase in milliseconds. */
+  private final Map<String, Long> budgets = new ConcurrentHashMap<String, Long>();
+
+  /** The OneOps calls in flight. */
+  private int inFlight;
+
+  /** Why the command was canceled. */
+  private volatile int exitCode = Constants.EXIT_CANCELED;
+
+  /** The current phase. */
+  private volatile Phase current;
+
+  /** Ends the phases that run over, created on first use. */
+  private ScheduledExecutorService timer;
+
+  /**
+   * Cancels, once.
+   */
+  public void cancel() {
+    this.cancel(Constants.EXIT_CANCELED);
+  }
+
+  private synchronized void cancel(int code) {
+    if (canceled.getCount() == 0) {
+      return;
+    }
+    exitCode = code;
+    canceled.countDown();
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+  }
+
+  /**
+   * Gets the exit code of the canceled command.
+   *
+   * @return {@link Constants#EXIT_TIMEOUT} if it ran out of time, else
+   *         {@link Constants#EXIT_CANCELED}
+   */
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  /**
+   * Cancels the command once it runs longer than the given time, counting from now.
+   *
+   * @param timeoutMillis the timeout in milliseconds
+   */
+  public void setTimeout(long timeoutMillis) {
+    this.schedule(null, timeoutMillis);
+  }
+
+  /**
+   * Sets the budget of a phase.
+   *
+   * @param name the phase name, e.g. create, update, deploy, wait or remove
+   * @param budgetMillis the budget in milliseconds
+   */
+  public void setBudget(String name, long budgetMillis) {
+    budgets.put(name, budgetMillis);
+  }
+
+  /**
+   * Starts a phase of the command, which cancels the command if it runs over its budget. Phases
+   * are started by the thread of the command and nest.
+   *
+   * @param name the phase name
+   * @return the phase, to close when it is over
+   */
+  public Phase phase(String name) {
+    Phase phase = new Phase(name, current);
+    current = phase;
+    Long budget = budgets.get(name);
+    if (budget != null) {
+      phase.timeout = this.schedule(phase, budget);
+    }
+    return phase;
+  }
+
+  private synchronized ScheduledFuture<?> schedule(Phase phase, long millis) {
+    if (timer == null) {
+      timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "boo-deadline");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return timer.schedule(() -> this.expire(phase, millis), millis, TimeUnit.MILLISECONDS);
+  }
+
+  private void expire(Phase phase, long millis) {
+    if (isCanceled()) {
+      return;
+    }
+    Phase overran = phase == null ? current : phase;
+    LogUtils.error(phase == null ? Constants.RUN_TIMEOUT : Constants.PHASE_TIMEOUT,
+        overran == null ? RUN : overran.name, TimeUnit.MILLISECONDS.toSeconds(millis));
+    this.cancel(Constants.EXIT_TIMEOUT);
+  }
+
+  /**
+   * Stops the timeouts, once the command is over.
+   */
+  public synchronized void close() {
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+  }
+
+  /**
+   * Checks if canceled.
+   *
+   * @return true, if canceled
+   */
+  public boolean isCanceled() {
+    return canceled.getCount() == 0;
+  }
+
+  /**
+   * Ends the current task if canceled.
+   *
+   * @throws BooExitException if canceled
+   */
+  public void check() {
+    if (isCanceled() && !isExempt.get()) {
+      throw new BooExitException(exitCode);
+    }
+  }
+
+  /**
+   * Sleeps, unless canceled meanwhile.
+   *
+   * @param millis the time in milliseconds
+   * @throws BooExitException if canceled or interrupted
+   */
+  public void sleep(long millis) {
+    this.check();
+    try {
+      if (canceled.await(millis, TimeUnit.MILLISECONDS)) {
+        this.check();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BooExitException(exitCode);
+    }
+  }
+
+  /**
+   * Interrupts a thread on cancel, e.g. the thread of the command.
+   *
+   * @param thread the thread
+   */
+  public void attach(Thread thread) {
+    threads.add(thread);
+    if (isCanceled()) {
+      thread.interrupt();
+    }
+  }
+
+  /**
+   * Stops interrupting a thread on cancel.
+   *
+   * @param thread the thread
+   */
+  public void detach(Thread thread) {
+    threads.remove(thread);
+  }
+
+  /**
+   * Starts a OneOps call.
+   *
+   * @throws BooExitException if canceled
+   */
+  public synchronized void begin() {
+    this.check();
+    inFlight++;
+  }
+
+  /**
+   * Ends a OneOps call.
+   */
+  public synchronized void end() {
+    inFlight--;
+    this.notifyAll();
+  }
+
+  /**
+   * Waits for the OneOps calls in flight to end.
+   *
+   * @param timeoutMillis the most time to wait in milliseconds
+   * @return true, if none is left
+   */
+  public synchronized boolean drain(long timeoutMillis) {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long left = timeoutMillis;
+    while (inFlight > 0 && left > 0) {
+      try {
+        this.wait(left);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      left = deadline - System.currentTimeMillis();
+    }
+    return inFlight == 0;
+  }
+
+  /**
+   * Runs clean-up calls in the current thread, even after the cancel.
+   *
+   * @param cleanUp the clean-up
+   */
+  public void runExempt(Runnable cleanUp) {
+    isExempt.set(Boolean.TRUE);
+    try {
+      cleanUp.run();
+    } finally {
+      isExempt.remove();
+    }
+  }
+
+  /**
+   * A phase of the command.
+   */
+  public final class Phase implements AutoCloseable {
+
+    /** The phase name. */
+    private final String name;
+
+    /** The enclosing phase, or null. */
+    private final Phase parent;
+
+    /** Cancels the command at the end of the budget, or null. */
+    private ScheduledFuture<?> timeout;
+
+    private Phase(String name, Phase parent) {
+      this.name = name;
+      this.parent = parent;
+    }
+
+    /**
+     * Gets the phase name.
+     *
+     * @return the phase name
+     */
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public void close() {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      current = parent;
+    }
+  }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * Follows the latest deployment of every environment until each one is complete, failed or
+ * canceled. The environments are polled from a few threads, so that a slow request for one does
+ * not delay the others, each on its own schedule: quickly right after a change, then less and less
+ * often while nothing happens. Only the changes are printed.
+ */
+public class DeploymentWatcher {
+
+  /** The states a deployment does not leave. */
+  public static final Set<String> TERMINAL =
+      new HashSet<String>(Arrays.asList("complete", "failed", "canceled"));
+
+  /** The state of an environment without a readable deployment. */
+  public static final String UNKNOWN = "unknown";
+
+  /** The state of an environment still deploying when the watch timed out. */
+  public static final String TIMEOUT = "timeout";
+
+  /** The shortest poll interval. */
+  public static final long MIN_INTERVAL_MILLIS = 2000;
+
+  /** The longest poll interval. */
+  public static final long MAX_INTERVAL_MILLIS = 30000;
+
+  /** The state of a failed deployment. */
+  private static final String FAILED = "failed";
+
+  /** Polls without a state before an environment is given up as unknown. */
+  private static final int MAX_MISSES = 3;
+
+  /** The most environments polled at the same time. */
+  private static final int MAX_POLL_THREADS = 8;
+
+  /** The environment names. */
+  private final List<String> envs;
+
+  /** The latest deployment state of an environment, or null if it cannot be read. */
+  private final Function<String, String> status;
+
+  /** Where the changes are printed. */
+  private final PrintStream out;
+
+  /** The shortest poll interval. */
+  private final long minInterval;
+
+  /** The longest poll interval. */
+  private final long maxInterval;
+
+  /** The last state seen per environment. */
+  private final Map<String, String> states = new ConcurrentHashMap<String, String>();
+
+  /** How long each environment took, in milliseconds, once it is done. */
+  private final Map<String, Long> durations = new ConcurrentHashMap<String, Long>();
+
+  /** Retries the failed deployment of an environment, or null. */
+  private Predicate<String> retry;
+
+  /** The retries per environment. */
+  private int retries;
+
+  /** Whether the watch is over, after which the polls still running change nothing. */
+  private volatile boolean isOver;
+
+  /**
+   * Instantiates a new watcher with the default intervals.
+   *
+   * @param envs the environment names
+   * @param status the latest deployment state of an environment, or null if it cannot be read
+   * @param out where the changes are printed
+   */
+  public DeploymentWatcher(List<String> envs, Function<String, String> status, PrintStream out) {
+    this(envs, status, out, MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Instantiates a new watcher.
+   *
+   * @param envs the environment names
+   * @param status the latest deployment state of an environment, or null if it cannot be read
+   * @param out where the changes are printed
+   * @param minInterval the shortest poll interval in milliseconds
+   * @param maxInterval the longest poll interval in milliseconds
+   */
+  public DeploymentWatcher(List<String> envs, Function<String, String> status, PrintStream out,
+      long minInterval, long maxInterval) {
+    this.envs = envs;
+    this.status = status;
+    this.out = out;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+  }
+
+  /**
+   * Retries failed deployments, up to the given number of times per environment.
+   *
+   * @param retry retries the deployment of an environment, true if a retry was started
+   * @param retries the retries per environment
+   */
+  public void setRetry(Predicate<String> retry, int retries) {
+    this.retry = retry;
+    this.retries = retries;
+  }
+
+  /**
+   * Polls until every deployment is in a terminal state.
+   *
+   * @return {@link Constants#EXIT_NORMAL} if all are complete,
+   *         {@link Constants#EXIT_DEPLOYMENT_FAILED} if any failed or was canceled, or
+   *         {@link Constants#EXIT_CLIENT} if any could not be read
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public int watch() throws InterruptedException {
+    return watch(0);
+  }
+
+  /**
+   * Polls until every deployment is in a terminal state or the timeout is over.
+   *
+   * @param timeoutMillis the timeout in milliseconds, or 0 to wait as long as it takes
+   * @return {@link Constants#EXIT_NORMAL} if all are complete,
+   *         {@link Constants#EXIT_DEPLOYMENT_FAILED} if any failed or was canceled,
+   *         {@link Constants#EXIT_TIMEOUT} if any was still running at the timeout, or
+   *         {@link Constants#EXIT_CLIENT} if any could not be read
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public int watch(long timeoutMillis) throws InterruptedException {
+    if (envs.isEmpty()) {
+      return Constants.EXIT_NORMAL;
+    }
+    long start = System.currentTimeMillis();
+    CountDownLatch done = new CountDownLatch(envs.size());
+    ScheduledExecutorService scheduler =
+        Executors.newScheduledThreadPool(Math.min(envs.size(), MAX_POLL_THREADS), runnable -> {
+          Thread thread = new Thread(runnable, "boo-watch");
+          thread.setDaemon(true);
+          return thread;
+        });
+    boolean isDone;
+    try {
+      for (String env : envs) {
+        scheduler.execute(new Poll(env, start, scheduler, done));
+      }
+      if (timeoutMillis > 0) {
+        isDone = done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+      } else {
+        done.await();
+        isDone = true;
+      }
+    } finally {
+      scheduler.shutdownNow();
+    }
+    // Without waiting for the polls in flight, which could outlast the timeout by a request.
+    synchronized (this) {
+      isOver = true;
+      if (!isDone) {
+        for (String env : envs) {
+          if (!durations.containsKey(env)) {
+            durations.put(env, System.currentTimeMillis() - start);
+            states.put(env, TIMEOUT);
+          }
+        }
+      }
+    }
+    return exitCode();
+  }
+
+  /**
+   * Gets the last state seen per environment.
+   *
+   * @return the states, in environment order
+   */
+  public Map<String, String> getStates() {
+    Map<String, String> result = new LinkedHashMap<String, String>();
+    for (String env : envs) {
+      result.put(env, states.get(env));
+    }
+    return result;
+  }
+
+  /**
+   * Gets how long each environment was watched until it was done or the watch timed out.
+   *
+   * @return the durations in milliseconds, in environment order
+   */
+  public Map<String, Long> getDurations() {
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    for (String env : envs) {
+      result.put(env, durations.get(env));
+    }
+    return result;
+  }
+
+  private int exitCode() {
+    int exit = Constants.EXIT_NORMAL;
+    for (String state : states.values()) {
+      if (UNKNOWN.equals(state)) {
+        exit = exit == Constants.EXIT_NORMAL ? Constants.EXIT_CLIENT : exit;
+      } else if (TIMEOUT.equals(state)) {
+        exit = Constants.EXIT_TIMEOUT;
+      } else if (!"complete".equalsIgnoreCase(state)) {
+        return Constants.EXIT_DEPLOYMENT_FAILED;
+      }
+    }
+    return exit;
+  }
+
+  /**
+   * One poll of one environment, which schedules the next one until the deployment is done.
+   */
+  private final class Poll implements Runnable {
+
+    /** The environment name. */
+    private final String env;
+
+    /** When the watch started. */
+    private final long start;
+
+    /** The scheduler. */
+    private final ScheduledExecutorService scheduler;
+
+    /** Counted down once the deployment is done. */
+    private final CountDownLatch done;
+
+    /** The current interval. */
+    private long interval = minInterval;
+
+    /** The polls in a row without a state. */
+    private int misses;
+
+    /** The retries left. */
+    private int retriesLeft = retries;
+
+    /** The polls after a retry that may still see the failed deployment. */
+    private int staleFailures;
+
+    Poll(String env, long start, ScheduledExecutorService scheduler, CountDownLatch done) {
+      this.env = env;
+      this.start = start;
+      this.scheduler = scheduler;
+      this.done = done;
+    }
+
+    @Override
+    public void run() {
+      String state;
+      try {
+        state = status.apply(env);
+      } catch (RuntimeException e) {
+        state = null;
+      }
+      if (state == null) {
+        if (++misses >= MAX_MISSES) {
+          change(UNKNOWN);
+          finish();
+          return;
+        }
+      } else {
+        misses = 0;
+        state = state.toLowerCase();
+        if (FAILED.equals(state) && staleFailures > 0) {
+          // The retried deployment may not be the latest one yet.
+          staleFailures--;
+        } else {
+          staleFailures = 0;
+          if (change(state)) {
+            interval = minInterval;
+          } else {
+            interval = Math.min(interval * 2, maxInterval);
+          }
+          if (FAILED.equals(state) && retry()) {
+            interval = minInterval;
+          } else if (TERMINAL.contains(state)) {
+            finish();
+            return;
+          }
+        }
+      }
+      try {
+        scheduler.schedule(this, interval, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // The watch is over
+      }
+    }
+
+    private boolean retry() {
+      if (retry == null || retriesLeft <= 0 || isOver) {
+        return false;
+      }
+      retriesLeft--;
+      synchronized (out) {
+        out.printf(Constants.WATCH_RETRY, env, retriesLeft);
+        out.println();
+      }
+      if (!retry.test(env)) {
+        return false;
+      }
+      staleFailures = MAX_MISSES;
+      return true;
+    }
+
+    private void finish() {
+      synchronized (DeploymentWatcher.this) {
+        if (!isOver) {
+          durations.put(env, System.currentTimeMillis() - start);
+          done.countDown();
+        }
+      }
+    }
+
+    private boolean change(String state) {
+      String previous;
+      synchronized (DeploymentWatcher.this) {
+        if (isOver) {
+          return false;
+        }
+        previous = states.put(env, state);
+      }
+      if (state.equals(previous)) {
+        return false;
+      }
+      synchronized (out) {
+        if (previous == null) {
+          out.printf(Constants.WATCH_STATE, env, state);
+        } else {
+          out.printf(Constants.WATCH_TRANSITION, env, previous, state);
+        }
+        out.println();
+      }
+      return true;
+    }
+  }
+}
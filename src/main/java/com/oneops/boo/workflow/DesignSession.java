@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.oneops.api.exception.OneOpsClientAPIException;
+import com.oneops.boo.LogUtils;
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * The design changes of a run that are not committed yet. Every design commit is a release on the
+ * server, so the workflow records its platform, component, attachment and variable changes here
+ * and commits them together.
+ */
+final class DesignSession {
+
+  /** The workflow. */
+  private final AbstractWorkflow flow;
+
+  /** The uncommitted changes, in order. */
+  private final List<String> changes = new ArrayList<String>();
+
+  /** The platforms with uncommitted changes. */
+  private final Set<String> platforms = new HashSet<String>();
+
+  DesignSession(AbstractWorkflow flow) {
+    this.flow = flow;
+  }
+
+  /**
+   * Records a change of a platform.
+   *
+   * @param platformName the platform name
+   * @param change what changed
+   */
+  synchronized void record(String platformName, String change) {
+    platforms.add(platformName);
+    changes.add(platformName + ": " + change);
+  }
+
+  /**
+   * Checks whether a platform has uncommitted changes.
+   *
+   * @param platformName the platform name
+   * @return true, if it has
+   */
+  synchronized boolean isPending(String platformName) {
+    return platforms.contains(platformName);
+  }
+
+  /**
+   * Commits the recorded changes, if any. When the commit fails, the changes left in the open
+   * design release are reported.
+   *
+   * @return true, if a commit was made
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  synchronized boolean commit() throws OneOpsClientAPIException {
+    if (changes.isEmpty()) {
+      return false;
+    }
+    try {
+      flow.call("commitDesign", () -> flow.getDesign().commitDesign());
+    } catch (OneOpsClientAPIException | RuntimeException e) {
+      LogUtils.error(Constants.DESIGN_COMMIT_FAILED, changes.size(), String.join(", ", changes));
+      throw e;
+    }
+    changes.clear();
+    platforms.clear();
+    return true;
+  }
+}
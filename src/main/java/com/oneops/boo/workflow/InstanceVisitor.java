@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+/**
+ * Gets the fields of each instance of a component that the listings use, see
+ * {@link AbstractWorkflow#forEachInstance(String, String, String, InstanceVisitor)}.
+ */
+@FunctionalInterface
+public interface InstanceVisitor {
+
+  /**
+   * Visits one instance.
+   *
+   * @param name the instance name
+   * @param id the instance id
+   * @param privateIp the private IP, or null
+   */
+  void visit(String name, Long id, Object privateIp);
+}
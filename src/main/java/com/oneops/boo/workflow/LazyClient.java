@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+import com.oneops.api.exception.OneOpsClientAPIException;
+
+/**
+ * A OneOps client created on first use, once, even when several threads ask at the same time.
+ *
+ * @param <T> the client type
+ */
+final class LazyClient<T> {
+
+  /** Creates the client. */
+  private final OneOpsCall<T> factory;
+
+  /** The client, once created. */
+  private volatile T client;
+
+  LazyClient(OneOpsCall<T> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Gets the client, creating it on first use.
+   *
+   * @return the client
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  T get() throws OneOpsClientAPIException {
+    T result = client;
+    if (result == null) {
+      synchronized (this) {
+        result = client;
+        if (result == null) {
+          result = factory.call();
+          client = result;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+import com.oneops.api.exception.OneOpsClientAPIException;
+
+/**
+ * One call of the OneOps client, see {@link AbstractWorkflow#call(String, OneOpsCall)}.
+ *
+ * @param <T> the response type
+ */
+@FunctionalInterface
+public interface OneOpsCall<T> {
+
+  /**
+   * Calls OneOps.
+   *
+   * @return the response
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  T call() throws OneOpsClientAPIException;
+
+  /**
+   * One call of the OneOps client whose response is not used.
+   */
+  @FunctionalInterface
+  interface Action {
+
+    /**
+     * Calls OneOps.
+     *
+     * @throws OneOpsClientAPIException the one ops client API exception
+     */
+    void run() throws OneOpsClientAPIException;
+  }
+}
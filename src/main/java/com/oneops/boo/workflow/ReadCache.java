@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.workflow;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oneops.api.exception.OneOpsClientAPIException;
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.yaml.Constants;
+
+/**
+ * Shares OneOps reads: threads asking for the same read while it is in flight wait for that one
+ * request instead of sending their own, and its result is reused for a short while. Failed reads
+ * are shared with the threads already waiting but not kept. A write drops everything, including
+ * the reads in flight, which may have started before the write.
+ */
+public class ReadCache {
+
+  /** How long a result is reused, in nanoseconds. */
+  private final long ttlNanos;
+
+  /** The last read per key. */
+  private final Map<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+
+  /** Counts the writes, so that a read started before a write is not reused after it. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Instantiates a new cache.
+   *
+   * @param ttlMillis how long a result is reused, in milliseconds
+   */
+  public ReadCache(long ttlMillis) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * Reads through the cache.
+   *
+   * @param <T> the response type
+   * @param key the read, e.g. the operation and its arguments
+   * @param read the read
+   * @return the response
+   * @throws OneOpsClientAPIException the one ops client API exception
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String key, OneOpsCall<T> read) throws OneOpsClientAPIException {
+    while (true) {
+      long current = generation.get();
+      Flight flight = flights.get(key);
+      if (flight != null && flight.isValid(current)) {
+        return (T) flight.join();
+      }
+      Flight mine = new Flight(current);
+      boolean isMine = flight == null ? flights.putIfAbsent(key, mine) == null
+          : flights.replace(key, flight, mine);
+      if (isMine) {
+        return mine.run(key, read);
+      }
+    }
+  }
+
+  /**
+   * Drops every result, after a write.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    flights.clear();
+  }
+
+  /**
+   * One read and its result.
+   */
+  private final class Flight {
+
+    /** The writes before the read. */
+    private final long generation;
+
+    /** The result. */
+    private final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+    /** Until when the result is reused. */
+    private volatile long expires;
+
+    Flight(long generation) {
+      this.generation = generation;
+    }
+
+    boolean isValid(long current) {
+      if (generation != current || result.isCompletedExceptionally()) {
+        return false;
+      }
+      return !result.isDone() || System.nanoTime() - expires < 0;
+    }
+
+    <T> T run(String key, OneOpsCall<T> read) throws OneOpsClientAPIException {
+      try {
+        T response = read.call();
+        expires = System.nanoTime() + ttlNanos;
+        result.complete(response);
+        return response;
+      } catch (OneOpsClientAPIException | RuntimeException | Error e) {
+        flights.remove(key, this);
+        result.completeExceptionally(e);
+        throw e;
+      }
+    }
+
+    Object join() throws OneOpsClientAPIException {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new BooExitException(Constants.EXIT_CANCELED);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof OneOpsClientAPIException) {
+          throw (OneOpsClientAPIException) e.getCause();
+        }
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw (RuntimeException) e.getCause();
+      }
+    }
+  }
+}
@@ -56,10 +56,11 @@ public class UpdateComponentTask implements Runnable {
     }
     try {
       if (isExist) {
-        flow.design.updatePlatformComponent(platformName, uniqueName, attributes);
+        flow.call("updatePlatformComponent", () -> flow.getDesign().updatePlatformComponent(platformName, uniqueName, attributes));
       } else {
-        flow.design.addPlatformComponent(platformName, componentName, uniqueName, attributes);
+        flow.call("addPlatformComponent", () -> flow.getDesign().addPlatformComponent(platformName, componentName, uniqueName, attributes));
       }
+      flow.designSession.record(platformName, "component " + uniqueName);
     } catch (OneOpsClientAPIException e) {
       e.printStackTrace();
     }
@@ -62,6 +62,9 @@ public class Constants {
   public static final int EXIT_UNKOWN = 7; // Unknown error
   public static final int EXIT_NOT_COMPLETE = 8; // Procedure was not completed
   public static final int EXIT_INVALID_PROFILE = 9; // Invalid profile selected
+  public static final int EXIT_DEPLOYMENT_FAILED = 10; // A watched deployment failed
+  public static final int EXIT_TIMEOUT = 11; // Timed out waiting for a deployment
+  public static final int EXIT_CANCELED = 12; // Canceled, e.g. by Ctrl-C
 
   /**
    * Customize config.
@@ -90,7 +93,15 @@ public class Constants {
 
   // Output during deployment
   public static final String DESTROY_ASSEMBLY = "Destroyed assembly %s!";
+  public static final String DESIGN_COMMIT_FAILED =
+      "The design commit failed, its %d changes are left in the open release: %s";
+  public static final String DESTROY_ENVIRONMENT = "Destroyed environment %s!";
+  public static final String DECOMMISSION_NOT_COMPLETE =
+      "Not deleting environment %s, its decommission deployment is %s.";
+  public static final String DELETE_ENVIRONMENT_ERROR = "Cannot delete environment %s: %s";
   public static final String PLATFORM_EXISTING = "Platform exist, skip create platform %s.";
+  public static final String PLATFORM_UNCHANGED =
+      "Platform %s unchanged since the last run, skip it. Use --verify to compare with OneOps.";
   public static final String CREATING_ASSEMBLY =
       "Auto generate assembly name turned on. Creating assembly %s ...";
   public static final String CREATING_PLATFORM = "Creating platform %s ...";
@@ -110,6 +121,7 @@ public class Constants {
   public static final String DEPLOYMENT_RUNNING = "Deployment is running ...";
   public static final String DEPLOYMENT_FAILED = "Deploy failed! %s";
   public static final String NO_NEED_DEPLOY = "No deployment needed!";
+  public static final String RELAY_UPDATE_FAILED = "Cannot update relay!";
   public static final String ACTIVE_DEPLOYMENT_EXISTING =
       "An active deployment has been running in the same environment, quit!";
   public static final String FAIL_DEPLOYMENT_EXISTING =
@@ -117,15 +129,44 @@ public class Constants {
   public static final String CREATE_ENV = "Creating the environment %s.";
   public static final String UPDATE_ENV = "Updating the environment %s.";
   public static final String ENV_EXISTING = "Environment exist, skip create environment %s.";
+  public static final String ENV_UNCHANGED =
+      "Clouds of environment %s unchanged since the last run, skip cloud scale update.";
   public static final String COMPUTE_SIZE = "Updating the compute size in %s - %s";
+  public static final String SCALE_UNCHANGED = "The compute size in %s - %s is unchanged";
   public static final String NEED_ANOTHER_CLEANUP =
       "A deployment has been started to remove active nodes. Please execute this command again once the deployment is complete to finish deleting remaining elements.";
-  public static final String NOTFOUND_ERROR = "Cannot find assembly %s! %n";
+  public static final String NOTFOUND_ERROR = "Cannot find assembly %s!";
+  public static final String STATS_FILE_ERROR = "Cannot write the request stats to %s: %s";
+  public static final String TRACE_FILE_ERROR = "Cannot write the trace to %s: %s";
+  public static final String LOG_FILE_ERROR = "Cannot write the log to %s: %s";
+  public static final String DAEMON_STARTED = "Boo daemon listening on port %d, see %s";
+  public static final String DAEMON_GONE = "The Boo daemon closed the connection.";
+  public static final String DAEMON_NOT_RUNNING = "No Boo daemon is running.";
+  public static final String BATCH_COMMAND_ERROR =
+      "A batch runs only -c, -u, -s or -r with --force.";
+  public static final String BATCH_NO_FILES = "No Boo YAML files to run.";
+  public static final String BATCH_RESULT = "%s: %s";
+  public static final String ROLLOUT_UNKNOWN_ENV = "Rollout wave %s lists unknown environment %s";
+  public static final String ROLLOUT_GATE = "Waiting for rollout wave %s before the next one";
+  public static final String ROLLOUT_PROCEDURE = "Health procedure %s in %s: %s";
+  public static final String ROLLOUT_HALTED = "Rollout halted after wave %s";
+  public static final String RESUME_RUN = "Resuming the unfinished run, %d steps already done";
+  public static final String RUN_TIMEOUT = "Timed out in the %s phase: the run took over %d s";
+  public static final String PHASE_TIMEOUT = "Timed out: the %s phase took over its %d s budget";
+  public static final String ABORTING = "Aborting, waiting for the OneOps requests in flight ...";
+  public static final String CANCEL_DEPLOYMENT = "Canceling the deployment started in %s";
+  public static final String RESUME_SKIPPED = "Skipping %s, already done by the resumed run";
+  public static final String WATCH_STATE = "%s deployment status: %s";
+  public static final String WATCH_TRANSITION = "%s deployment status: %s -> %s";
+  public static final String WATCH_RETRY = "%s deployment failed, retrying it (%d retries left)";
+  public static final String WAIT_RESULT = "%s deployment %s after %d s";
   public static final String NO_DEPLOYMENT = "404 Not Found";
   public static final String NO_ENVIRONMENT = "No such environment";
   public static final String SUCCEED = "Succeed!";
   public static final String PROCEDURE_NOT_COMPLETE = "Procedure did not complete";
   public static final String PROCEDURE_RUNNING = "Procedure is running ...";
+  public static final String PROCEDURE_FAILED = "Cannot run the procedure: %s";
+  public static final String NO_ASSEMBLY_TO_REMOVE = "There is no instance to remove";
 
   // Debug
   public static final String ENV_NOT_EXISTING = "The environment %s is not exist! %s";
@@ -29,6 +29,9 @@ public class EnvironmentBean {
   @JsonIgnore
   private List<PlatformBean> platformsList;
 
+  @JsonIgnore
+  private String fingerprint;
+
   public List<CloudBean> getClouds() {
     return clouds;
   }
@@ -61,5 +64,19 @@ public class EnvironmentBean {
 	this.envName = envName;
   }
 
+  /**
+   * Stable hash of the attributes, clouds and platform overrides of this environment, computed
+   * once when the model is built.
+   *
+   * @return the fingerprint
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public void setFingerprint(String fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
   
 }
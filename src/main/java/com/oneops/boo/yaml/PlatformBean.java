@@ -16,6 +16,8 @@ package com.oneops.boo.yaml;
 import java.util.List;
 import java.util.Map;
 
+import com.oneops.boo.yaml.helper.PlatformBeanHelper;
+
 public class PlatformBean implements Comparable<Object> {
 
   private int deployOrder;
@@ -29,6 +31,7 @@ public class PlatformBean implements Comparable<Object> {
   private Map<String, Object> autoHealing;
   private ScaleBean scale;
   private List<String> links;
+  private String fingerprint;
 
   public static final String REPLACE_AFTER_MINUTES = "replace_after_minutes";
   public static final String REPLACE_AFTER_REPAIRS = "replace_after_repairs";
@@ -52,6 +55,8 @@ public class PlatformBean implements Comparable<Object> {
     if (pack != null) {
       this.packs = pack.split("[\\/\\s]");
     }
+    // Before the workflow consumes the attachments out of the component maps.
+    this.fingerprint = PlatformBeanHelper.fingerprint(this);
   }
 
   public Map<String, String> getSecureVariables() {
@@ -102,6 +107,16 @@ public class PlatformBean implements Comparable<Object> {
 	return scale;
   }
 
+  /**
+   * Stable hash of the pack, components, variables, secure variables, links, auto healing and
+   * scale of this platform, computed once when the model is built.
+   *
+   * @return the fingerprint
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
 public static class PlatformBeanBuilder {
     private String name;
     private String pack;
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.yaml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One wave of the rollout: environments deployed together, and the gate the next wave waits for.
+ */
+public class RolloutWaveBean {
+
+  /** The wave name. */
+  private String name;
+
+  /** The environment names. */
+  private List<String> environments = new ArrayList<String>();
+
+  /** The most environments deployed at the same time, 0 for all of them. */
+  private int parallel;
+
+  /** The platform of the health procedure, or null. */
+  private String gatePlatform;
+
+  /** The component of the health procedure. */
+  private String gateComponent;
+
+  /** The action of the health procedure. */
+  private String gateAction;
+
+  /** The arguments of the health procedure. */
+  private String gateArguments = "";
+
+  /**
+   * Gets the wave name.
+   *
+   * @return the wave name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets the wave name.
+   *
+   * @param name the new wave name
+   */
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the environment names.
+   *
+   * @return the environment names
+   */
+  public List<String> getEnvironments() {
+    return environments;
+  }
+
+  /**
+   * Sets the environment names.
+   *
+   * @param environments the new environment names
+   */
+  public void setEnvironments(List<String> environments) {
+    this.environments = environments;
+  }
+
+  /**
+   * Gets the most environments deployed at the same time.
+   *
+   * @return the parallel, 0 for all of them
+   */
+  public int getParallel() {
+    return parallel;
+  }
+
+  /**
+   * Sets the most environments deployed at the same time.
+   *
+   * @param parallel the new parallel, 0 for all of them
+   */
+  public void setParallel(int parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Checks if the gate runs a health procedure.
+   *
+   * @return true, if it does
+   */
+  public boolean hasGateProcedure() {
+    return gatePlatform != null && gateComponent != null && gateAction != null;
+  }
+
+  /**
+   * Gets the platform of the health procedure.
+   *
+   * @return the platform, or null
+   */
+  public String getGatePlatform() {
+    return gatePlatform;
+  }
+
+  /**
+   * Gets the component of the health procedure.
+   *
+   * @return the component
+   */
+  public String getGateComponent() {
+    return gateComponent;
+  }
+
+  /**
+   * Gets the action of the health procedure.
+   *
+   * @return the action
+   */
+  public String getGateAction() {
+    return gateAction;
+  }
+
+  /**
+   * Gets the arguments of the health procedure.
+   *
+   * @return the arguments
+   */
+  public String getGateArguments() {
+    return gateArguments;
+  }
+
+  /**
+   * Sets the health procedure.
+   *
+   * @param platform the platform
+   * @param component the component
+   * @param action the action
+   * @param arguments the arguments, or null
+   */
+  public void setGateProcedure(String platform, String component, String action,
+      String arguments) {
+    this.gatePlatform = platform;
+    this.gateComponent = component;
+    this.gateAction = action;
+    this.gateArguments = arguments == null ? "" : arguments;
+  }
+}
@@ -138,6 +138,24 @@ public class ScaleBean {
     return component;
   }
 
+  /**
+   * Copies the scale for a platform, for the scale of a platform that does not name it.
+   *
+   * @param platformName the platform name
+   * @return the copy
+   */
+  public ScaleBean forPlatform(String platformName) {
+    ScalBeanBuilder builder =
+        new ScalBeanBuilder().setComponent(component).setPlatform(platformName);
+    builder.current = current;
+    builder.max = max;
+    builder.min = min;
+    builder.stepUp = stepUp;
+    builder.stepDown = stepDown;
+    builder.percentDeploy = percentDeploy;
+    return builder.build();
+  }
+
   /**
    * The Class ScalBeanBuilder.
    */
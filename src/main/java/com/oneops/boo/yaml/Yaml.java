@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.oneops.boo.yaml.helper.EnvironmentBeanHelper;
 import com.oneops.boo.yaml.helper.PlatformBeanHelper;
 import com.oneops.boo.yaml.helper.PlatformConfigBeanHelper;
+import com.oneops.boo.yaml.helper.RolloutWaveBeanHelper;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,18 +34,20 @@ public class Yaml {
   private Map<String, Object> environment;
   private Map<String, Object> environments;
   private Map<String, Object> scale;
+  private Map<String, Object> rollout;
   private Map<String, Object> extract;
   private Map<String, Object> others = new HashMap<String, Object>();
 
   // Build
   @JsonIgnore
-  private List<PlatformBean> platformsList;
+  private volatile List<PlatformBean> platformsList;
 
   @JsonIgnore
   private List<ScaleBean> envList;
 
+  /** Built once, even when environment threads ask at the same time. */
   @JsonIgnore
-  private List<EnvironmentBean> environmentList;
+  private volatile List<EnvironmentBean> environmentList;
 
   public AssemblyBean getAssembly() {
     return assembly;
@@ -85,10 +88,17 @@ public class Yaml {
    */
   @JsonIgnore
   public List<PlatformBean> getPlatformsList() {
-    if (platformsList == null) {
-      platformsList = PlatformBeanHelper.getPlatforms(this.getPlatforms());
+    List<PlatformBean> result = platformsList;
+    if (result == null) {
+      synchronized (this) {
+        result = platformsList;
+        if (result == null) {
+          result = PlatformBeanHelper.getPlatforms(this.getPlatforms());
+          platformsList = result;
+        }
+      }
     }
-    return platformsList;
+    return result;
   }
 
   /**
@@ -114,18 +124,41 @@ public class Yaml {
     return PlatformConfigBeanHelper.getExtractBeans(this.extract);
   }
 
+  /**
+   * Gets the environment list, built once like the platforms list.
+   *
+   * @return the environment list
+   */
   @JsonIgnore
   public List<EnvironmentBean> getEnvironmentList() {
-	List<EnvironmentBean> list = new ArrayList<EnvironmentBean>();
-	if(this.environment != null) {
-		EnvironmentBean env = EnvironmentBeanHelper.getEnvironment(this.environment);
-		env.setEnvName(boo.getEnvName());
-		list.add(env);
-	} else {
-		list.addAll(EnvironmentBeanHelper.getEnvironments(this.environments));
-	}
-	
-    return list;
+    List<EnvironmentBean> result = environmentList;
+    if (result == null) {
+      synchronized (this) {
+        result = environmentList;
+        if (result == null) {
+          result = new ArrayList<EnvironmentBean>();
+          if (this.environment != null) {
+            EnvironmentBean env = EnvironmentBeanHelper.getEnvironment(this.environment);
+            env.setEnvName(boo.getEnvName());
+            result.add(env);
+          } else {
+            result.addAll(EnvironmentBeanHelper.getEnvironments(this.environments));
+          }
+          environmentList = result;
+        }
+      }
+    }
+    return new ArrayList<EnvironmentBean>(result);
+  }
+
+  /**
+   * Gets the rollout waves, in order.
+   *
+   * @return the rollout waves
+   */
+  @JsonIgnore
+  public List<RolloutWaveBean> getRolloutWaves() {
+    return RolloutWaveBeanHelper.getWaves(this.rollout, this.getEnvironmentList());
   }
 
   @SuppressWarnings("unchecked")
@@ -138,6 +171,10 @@ public class Yaml {
     this.environment = environments;
   }
   
+  public Map<String, Object> getEnvironments() {
+    return environments;
+  }
+
   public void setEnvironments(Map<String, Object> environments) {
 	    this.environments = environments;
 	  }
@@ -150,6 +187,14 @@ public class Yaml {
     this.scale = scale;
   }
 
+  public Map<String, Object> getRollout() {
+    return rollout;
+  }
+
+  public void setRollout(Map<String, Object> rollout) {
+    this.rollout = rollout;
+  }
+
   public void setExtract(Map<String, Object> extract) {
     this.extract = extract;
   }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.yaml.helper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.hash.Hashing;
+
+/**
+ * Stable content hashes of YAML model fragments.
+ */
+public final class ContentHashHelper {
+
+  /** Map keys are sorted so that the YAML key order does not change the hash. */
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+  private ContentHashHelper() {}
+
+  /**
+   * Hash of the canonical JSON form of the given content.
+   *
+   * @param content maps, lists and scalars as read from the YAML
+   * @return the SHA-256 hex digest, or null if the content is null
+   */
+  public static String hash(Object content) {
+    if (content == null) {
+      return null;
+    }
+    try {
+      return Hashing.sha256().hashBytes(MAPPER.writeValueAsBytes(content)).toString();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot hash " + content.getClass(), e);
+    }
+  }
+
+  /**
+   * Keyed hash of the canonical JSON form of the given content, for hashes that are stored and
+   * may cover secrets: without the key they cannot be brute-forced offline.
+   *
+   * @param key the HMAC key
+   * @param content maps, lists and scalars as read from the YAML
+   * @return the HMAC-SHA256 hex digest, or null if the content is null
+   */
+  public static String hash(byte[] key, Object content) {
+    if (content == null) {
+      return null;
+    }
+    try {
+      return Hashing.hmacSha256(key).hashBytes(MAPPER.writeValueAsBytes(content)).toString();
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot hash " + content.getClass(), e);
+    }
+  }
+}
@@ -15,11 +15,14 @@ package com.oneops.boo.yaml.helper;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import com.oneops.boo.yaml.CloudBean;
 import com.oneops.boo.yaml.EnvironmentBean;
+import com.oneops.boo.yaml.PlatformBean;
 import com.oneops.boo.yaml.ScaleBean;
 
 public final class EnvironmentBeanHelper {
@@ -73,6 +76,33 @@ public final class EnvironmentBeanHelper {
     return scales;
   }
 
+  /**
+   * Gets the scales of an environment: the global scale section, where the platforms of the
+   * environment override it per platform and component.
+   *
+   * @param scales the global scales, or null
+   * @param env the environment
+   * @return the scales
+   */
+  public static List<ScaleBean> getScales(List<ScaleBean> scales, EnvironmentBean env) {
+    Map<String, ScaleBean> merged = new LinkedHashMap<String, ScaleBean>();
+    if (scales != null) {
+      for (ScaleBean scale : scales) {
+        merged.put(scale.getPlatform() + "/" + scale.getComponent(), scale);
+      }
+    }
+    if (env.getPlatformsList() != null) {
+      for (PlatformBean platform : env.getPlatformsList()) {
+        ScaleBean scale = platform.getScale();
+        if (scale != null) {
+          merged.put(platform.getName() + "/" + scale.getComponent(),
+              scale.forPlatform(platform.getName()));
+        }
+      }
+    }
+    return new ArrayList<ScaleBean>(merged.values());
+  }
+
   /**
    * Gets the environment.
    *
@@ -102,6 +132,7 @@ public final class EnvironmentBeanHelper {
     }
 
     env.setOthers(attris);
+    env.setFingerprint(fingerprint(env));
     return env;
   }
 
@@ -143,9 +174,38 @@ public final class EnvironmentBeanHelper {
     	  }
       }
       env.setOthers(attris);
+      env.setFingerprint(fingerprint(env));
       ebList.add(env);
     }
 
     return ebList;
   }
+
+  /**
+   * Content hash of an environment.
+   *
+   * @param env the env
+   * @return the fingerprint
+   */
+  public static String fingerprint(EnvironmentBean env) {
+    Map<String, Object> content = new TreeMap<String, Object>();
+    content.put("attributes", env.getOthers());
+    Map<String, Object> clouds = new TreeMap<String, Object>();
+    for (CloudBean cloud : env.getClouds()) {
+      Map<String, String> config = new TreeMap<String, String>();
+      config.put(PRIORITY, cloud.getPriority());
+      config.put(DPMT_ORDER, cloud.getDpmtOrder());
+      config.put(PCT_SCALE, cloud.getPctScale());
+      clouds.put(cloud.getCloudName(), config);
+    }
+    content.put(CLOUDS, clouds);
+    if (env.getPlatformsList() != null) {
+      Map<String, String> platforms = new TreeMap<String, String>();
+      for (PlatformBean platform : env.getPlatformsList()) {
+        platforms.put(platform.getName(), platform.getFingerprint());
+      }
+      content.put(PLATFORMS, platforms);
+    }
+    return ContentHashHelper.hash(content);
+  }
 }
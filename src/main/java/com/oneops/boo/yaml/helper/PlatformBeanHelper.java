@@ -16,8 +16,10 @@ package com.oneops.boo.yaml.helper;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import com.oneops.boo.yaml.PlatformBean;
+import com.oneops.boo.yaml.ScaleBean;
 
 public final class PlatformBeanHelper {
 
@@ -80,4 +82,45 @@ public final class PlatformBeanHelper {
     return platforms;
   }
 
+  /**
+   * Content hash of a platform.
+   *
+   * @param platform the platform
+   * @return the fingerprint
+   */
+  public static String fingerprint(PlatformBean platform) {
+    Map<String, Object> content = new TreeMap<String, Object>();
+    content.put(PACK, platform.getPackId());
+    content.put(PACK_VERSION, platform.getPackVersion());
+    content.put(COMPONENTS, platform.getComponents());
+    content.put(VARIABLES, platform.getVariables());
+    content.put(ENCRYPTED_VARIABLES, platform.getSecureVariables());
+    content.put(LINKS, platform.getLinks());
+    content.put(AUTO_HEALING, platform.getAutoHealing());
+    content.put(SCALE, toMap(platform.getScale()));
+    return ContentHashHelper.hash(content);
+  }
+
+  /**
+   * Scale as a map, the way it is hashed.
+   *
+   * @param scale the scale
+   * @return the map, or null without scale
+   */
+  static Map<String, Object> toMap(ScaleBean scale) {
+    if (scale == null) {
+      return null;
+    }
+    Map<String, Object> map = new TreeMap<String, Object>();
+    map.put("platform", scale.getPlatform());
+    map.put("component", scale.getComponent());
+    map.put("current", scale.getCurrent());
+    map.put("min", scale.getMin());
+    map.put("max", scale.getMax());
+    map.put("step_up", scale.getStepUp());
+    map.put("step_down", scale.getStepDown());
+    map.put("percent_deploy", scale.getPercentDeploy());
+    return map;
+  }
+
 }
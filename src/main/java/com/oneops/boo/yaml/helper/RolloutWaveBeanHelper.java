@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo.yaml.helper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.oneops.boo.yaml.EnvironmentBean;
+import com.oneops.boo.yaml.RolloutWaveBean;
+
+public final class RolloutWaveBeanHelper {
+
+  /** The environments of a wave. */
+  private static final String ENVIRONMENTS = "environments";
+
+  /** The most environments of a wave deployed at the same time. */
+  private static final String PARALLEL = "parallel";
+
+  /** The gate after a wave. */
+  private static final String GATE = "gate";
+
+  /** The platform of the health procedure. */
+  private static final String PLATFORM = "platform";
+
+  /** The component of the health procedure. */
+  private static final String COMPONENT = "component";
+
+  /** The action of the health procedure. */
+  private static final String ACTION = "action";
+
+  /** The arguments of the health procedure. */
+  private static final String ARGUMENTS = "arguments";
+
+  /** The name of the wave of the environments no other wave lists. */
+  public static final String REST = "rest";
+
+  private RolloutWaveBeanHelper() {}
+
+  /**
+   * Gets the waves of the rollout section, in order. The environments no wave lists are deployed
+   * by a last wave; without a rollout section, that is the only wave.
+   *
+   * @param rollout the rollout section, or null
+   * @param environments the environments
+   * @return the waves
+   */
+  @SuppressWarnings("unchecked")
+  public static List<RolloutWaveBean> getWaves(Map<String, Object> rollout,
+      List<EnvironmentBean> environments) {
+    List<RolloutWaveBean> waves = new ArrayList<RolloutWaveBean>();
+    Set<String> listed = new HashSet<String>();
+    if (rollout != null) {
+      for (Map.Entry<String, Object> entry : rollout.entrySet()) {
+        if (!(entry.getValue() instanceof Map)) {
+          continue;
+        }
+        Map<String, Object> map = (Map<String, Object>) entry.getValue();
+        RolloutWaveBean wave = new RolloutWaveBean();
+        wave.setName(entry.getKey());
+        Object envs = map.get(ENVIRONMENTS);
+        if (envs instanceof List) {
+          for (Object env : (List<Object>) envs) {
+            wave.getEnvironments().add(String.valueOf(env));
+          }
+        } else if (envs != null) {
+          wave.getEnvironments().add(String.valueOf(envs));
+        }
+        if (map.get(PARALLEL) != null) {
+          wave.setParallel(Integer.parseInt(String.valueOf(map.get(PARALLEL))));
+        }
+        if (map.get(GATE) instanceof Map) {
+          Map<String, Object> gate = (Map<String, Object>) map.get(GATE);
+          wave.setGateProcedure(toString(gate.get(PLATFORM)), toString(gate.get(COMPONENT)),
+              toString(gate.get(ACTION)), toString(gate.get(ARGUMENTS)));
+        }
+        listed.addAll(wave.getEnvironments());
+        waves.add(wave);
+      }
+    }
+    RolloutWaveBean rest = new RolloutWaveBean();
+    rest.setName(REST);
+    for (EnvironmentBean env : environments) {
+      if (!listed.contains(env.getEnvName())) {
+        rest.getEnvironments().add(env.getEnvName());
+      }
+    }
+    if (!rest.getEnvironments().isEmpty()) {
+      waves.add(rest);
+    }
+    return waves;
+  }
+
+  private static String toString(Object value) {
+    return value == null ? null : String.valueOf(value);
+  }
+}
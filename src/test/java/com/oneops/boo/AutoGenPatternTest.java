@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.oneops.boo.workflow.AbstractWorkflow;
+
+public class AutoGenPatternTest {
+
+  @Test
+  public void validateAutoGenNames() {
+    Pattern pattern = AbstractWorkflow.autoGenPattern("app");
+    assertTrue(pattern.matcher("app-x9").matches());
+    assertTrue(pattern.matcher("app-abcdef123").matches());
+    assertFalse(pattern.matcher("app").matches());
+    assertFalse(pattern.matcher("app-x").matches());
+    assertFalse(pattern.matcher("app-abcdef1234").matches());
+    assertFalse(pattern.matcher("app-x9-y8").matches());
+    assertFalse(pattern.matcher("myapp-x9").matches());
+  }
+
+  @Test
+  public void validateQuotedPrefix() {
+    Pattern pattern = AbstractWorkflow.autoGenPattern("a.b");
+    assertTrue(pattern.matcher("a.b-x9").matches());
+    assertFalse(pattern.matcher("aXb-x9").matches());
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.oneops.boo.yaml.Constants;
+
+public class BooBatchTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private CommandLine parse(String... args) throws Exception {
+    Options options = new Options();
+    options.addOption(Option.builder("f").longOpt("config-file").hasArg().build());
+    options.addOption(Option.builder().longOpt("batch").hasArg().build());
+    options.addOption(Option.builder().longOpt("parallel").hasArg().build());
+    options.addOption(Option.builder().longOpt("stats").build());
+    options.addOption(Option.builder("u").longOpt("update").build());
+    options.addOption(Option.builder("r").longOpt("remove").build());
+    options.addOption(Option.builder("m").longOpt("message").hasArg().build());
+    return new DefaultParser().parse(options, args);
+  }
+
+  @Test
+  public void detectsBatches() throws Exception {
+    assertFalse(BooBatch.isBatch(parse("-f", "a.yaml", "-u")));
+    assertTrue(BooBatch.isBatch(parse("-f", "a.yaml", "-f", "b.yaml", "-u")));
+    assertTrue(BooBatch.isBatch(parse("--batch", "envs", "-u")));
+  }
+
+  @Test
+  public void collectsFilesAndCommonArgs() throws Exception {
+    File dir = temp.newFolder("envs");
+    new File(dir, "b.yml").createNewFile();
+    new File(dir, "a.yaml").createNewFile();
+    new File(dir, "notes.txt").createNewFile();
+    File single = temp.newFile("single.yaml");
+    BooBatch batch = new BooBatch(parse("-f", single.getAbsolutePath(), "--batch",
+        dir.getAbsolutePath(), "--parallel", "2", "--stats", "-u", "-m", "rollout"));
+    assertEquals(Arrays.asList(single, new File(dir, "a.yaml"), new File(dir, "b.yml")),
+        batch.getFiles());
+    assertEquals(Arrays.asList("--update", "--message", "rollout"), batch.getCommonArgs());
+  }
+
+  @Test
+  public void refusesUnforcedRemove() throws Exception {
+    assertEquals(Constants.EXIT_WRONG_PRAMETER,
+        new BooBatch(parse("--batch", temp.getRoot().getAbsolutePath(), "-r")).run());
+  }
+
+  @Test
+  public void refusesWrongParallel() throws Exception {
+    File dir = temp.newFolder("envs");
+    new File(dir, "a.yaml").createNewFile();
+    assertEquals(Constants.EXIT_WRONG_PRAMETER,
+        new BooBatch(parse("--batch", dir.getAbsolutePath(), "--parallel", "two", "-u")).run());
+    assertEquals(Constants.EXIT_WRONG_PRAMETER,
+        new BooBatch(parse("--batch", dir.getAbsolutePath(), "--parallel", "0", "-u")).run());
+  }
+}
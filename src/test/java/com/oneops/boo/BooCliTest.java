@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.oneops.boo.yaml.Constants;
+
+public class BooCliTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void refusesWrongWaitOptions() throws Exception {
+    String missing = new File(temp.getRoot(), "missing.yaml").getAbsolutePath();
+    assertEquals(Constants.EXIT_WRONG_PRAMETER,
+        new BooCli().parse(new String[] {"-f", missing, "-u", "--wait", "soon"}));
+    assertEquals(Constants.EXIT_WRONG_PRAMETER,
+        new BooCli().parse(new String[] {"-f", missing, "-u", "--wait", "0"}));
+    assertEquals(Constants.EXIT_WRONG_PRAMETER, new BooCli()
+        .parse(new String[] {"-f", missing, "-u", "--wait", "60", "--wait-retries", "x"}));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.oneops.boo.daemon.BooDaemon;
+import com.oneops.boo.daemon.DaemonClient;
+
+public class BooDaemonTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File portFile;
+
+  private BooDaemon daemon;
+
+  private Thread serving;
+
+  private CountDownLatch canceled;
+
+  @Before
+  public void start() throws Exception {
+    portFile = new File(temp.getRoot(), ".boo/daemon");
+    canceled = new CountDownLatch(1);
+    daemon = new BooDaemon(portFile, args -> {
+      System.out.println(String.join(" ", args) + " in " + System.getProperty("user.dir"));
+      try {
+        if ("wait".equals(args[0])) {
+          return canceled.await(10, TimeUnit.SECONDS) ? 130 : 0;
+        }
+        String answer =
+            new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                .readLine();
+        System.err.println("answer " + answer);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      return 42;
+    }, canceled::countDown);
+    daemon.start();
+    serving = new Thread(daemon::serve);
+    serving.start();
+  }
+
+  @After
+  public void stop() throws InterruptedException {
+    daemon.close();
+    serving.join(5000);
+  }
+
+  private Integer send(String input, ByteArrayOutputStream out, ByteArrayOutputStream err,
+      String... args) {
+    return DaemonClient.run(portFile, args,
+        new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+        new PrintStream(out, true), new PrintStream(err, true));
+  }
+
+  @Test
+  public void relaysOutputInputAndExitCode() {
+    for (int i = 0; i < 3; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      assertEquals(Integer.valueOf(42), send("y\n", out, err, "-f", "boo.yml", "-s"));
+      assertEquals(String.format("-f boo.yml -s in %s%n", System.getProperty("user.dir")),
+          new String(out.toByteArray(), StandardCharsets.UTF_8));
+      assertEquals(String.format("answer y%n"),
+          new String(err.toByteArray(), StandardCharsets.UTF_8));
+    }
+    assertEquals(1, canceled.getCount());
+  }
+
+  @Test
+  public void killedClientCancelsTheCommand() throws Exception {
+    String[] address = new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8)
+        .trim().split(" ");
+    try (Socket socket =
+        new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(address[0]))) {
+      DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+      request.writeUTF(address[1]);
+      request.writeUTF(System.getProperty("user.dir"));
+      request.writeBoolean(false);
+      request.writeInt(1);
+      request.writeUTF("wait");
+      request.flush();
+      // The command runs once it prints.
+      new DataInputStream(socket.getInputStream()).readByte();
+    }
+    assertTrue(canceled.await(5, TimeUnit.SECONDS));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(Integer.valueOf(42), send("y\n", out, new ByteArrayOutputStream(), "-s"));
+  }
+
+  @Test
+  public void flagsDoNotOutliveTheirCommand() throws Exception {
+    String missing = new File(temp.getRoot(), "missing.yaml").getAbsolutePath();
+    BooCli first = new BooCli();
+    first.parse(new String[] {"--force", "--quiet", "--no-deploy", "--verify", "-f", missing, "-s"});
+    assertTrue(first.isForced() && first.isQuiet() && first.isNoDeploy() && first.isVerify());
+
+    BooCli next = new BooCli();
+    assertFalse(next.isForced() || next.isQuiet() || next.isNoDeploy() || next.isVerify());
+  }
+
+  @Test
+  public void stopsAndRemovesThePortFile() throws InterruptedException {
+    assertTrue(portFile.exists());
+    assertEquals(Integer.valueOf(0), send("", new ByteArrayOutputStream(),
+        new ByteArrayOutputStream(), BooDaemon.DAEMON_COMMAND, BooDaemon.STOP_COMMAND));
+    serving.join(5000);
+    assertFalse(serving.isAlive());
+    assertFalse(portFile.exists());
+    assertNull(send("", new ByteArrayOutputStream(), new ByteArrayOutputStream(), "-s"));
+  }
+}
@@ -4,8 +4,14 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -147,6 +153,66 @@ public class BooYamlReaderTest {
     
   }
   
+  @Test
+  @SuppressWarnings("unchecked")
+  public void validateFingerprints() throws Exception {
+    BooYamlReader reader = new BooYamlReader();
+    Yaml first = reader.read(new FileReader(yaml("assembly.yaml")));
+    Yaml second = reader.read(new FileReader(yaml("assembly.yaml")));
+    PlatformBean p0 = first.getPlatformsList().get(0);
+    PlatformBean p1 = first.getPlatformsList().get(1);
+    assertNotNull(p0.getFingerprint());
+    assertEquals(p0.getFingerprint(), second.getPlatformsList().get(0).getFingerprint());
+    assertNotEquals(p0.getFingerprint(), p1.getFingerprint());
+
+    // Key order does not matter
+    Map<String, Object> components = new LinkedHashMap<String, Object>();
+    List<String> names = new ArrayList<String>(p0.getComponents().keySet());
+    Collections.reverse(names);
+    for (String name : names) {
+      components.put(name, p0.getComponents().get(name));
+    }
+    PlatformBean reordered = new PlatformBean.PlatformBeanBuilder(p0.getPackId(), p0.getPackVersion())
+        .setName(p0.getName()).setComponents(components).setVariables(p0.getVariables())
+        .setLinks(p0.getLinks()).build();
+    assertEquals(p0.getFingerprint(), reordered.getFingerprint());
+
+    // Content does
+    ((Map<String, Object>) components.get("component-0")).put("config-0", "changed");
+    PlatformBean changed = new PlatformBean.PlatformBeanBuilder(p0.getPackId(), p0.getPackVersion())
+        .setName(p0.getName()).setComponents(components).setVariables(p0.getVariables())
+        .setLinks(p0.getLinks()).build();
+    assertNotEquals(p0.getFingerprint(), changed.getFingerprint());
+
+    // Environments
+    EnvironmentBean env0 = first.getEnvironmentList().get(0);
+    EnvironmentBean env1 = first.getEnvironmentList().get(1);
+    assertNotNull(env0.getFingerprint());
+    assertEquals(env0.getFingerprint(), second.getEnvironmentList().get(0).getFingerprint());
+    assertNotEquals(env0.getFingerprint(), env1.getFingerprint());
+  }
+
+  @Test
+  public void validateConcurrentEnvironmentList() throws Exception {
+    Yaml yaml = new BooYamlReader().read(new FileReader(yaml("assembly.yaml")));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<EnvironmentBean>>> results = new ArrayList<Future<List<EnvironmentBean>>>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(yaml::getEnvironmentList));
+      }
+      List<EnvironmentBean> first = results.get(0).get();
+      for (Future<List<EnvironmentBean>> result : results) {
+        List<EnvironmentBean> envs = result.get();
+        for (int i = 0; i < first.size(); i++) {
+          assertSame(first.get(i), envs.get(i));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   protected File yaml(String name) {
     return new File(basedir, String.format("src/test/yaml/boo/%s", name));
   }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oneops.api.OOInstance;
+import com.oneops.api.exception.OneOpsClientAPIException;
+import com.oneops.api.resource.model.Deployment;
+import com.oneops.boo.state.StateStore;
+import com.oneops.boo.stats.RequestStats;
+import com.oneops.boo.stats.RequestStats.OperationStats;
+import com.oneops.boo.workflow.BuildAllPlatforms;
+
+/**
+ * Runs {@link BuildAllPlatforms} against a {@link MockOneOpsServer} and counts the OneOps calls it
+ * makes, by operation.
+ */
+public class BuildAllPlatformsTest {
+
+  private String basedir;
+  private MockOneOpsServer server;
+  private File stateDir;
+  private Map<String, String> profile;
+
+  @Before
+  public void before() throws IOException {
+    basedir = System.getProperty("basedir", new File("").getAbsolutePath());
+    server = new MockOneOpsServer();
+    stateDir = Files.createTempDirectory("boo-state").toFile();
+    System.setProperty(StateStore.STATE_DIR_PROPERTY, stateDir.getAbsolutePath());
+    profile = new HashMap<String, String>();
+    profile.put("host", server.getEndpoint());
+    profile.put("app_order", "1");
+    profile.put("web_current", "2");
+  }
+
+  @After
+  public void after() throws IOException {
+    server.close();
+    FileUtils.deleteDirectory(stateDir);
+    System.clearProperty(StateStore.STATE_DIR_PROPERTY);
+    RequestStats.reset();
+  }
+
+  @Test
+  public void unchangedScalesAreNotSent() throws Exception {
+    workflow().process(false, false);
+    RequestStats.reset();
+    workflow().process(true, false);
+    assertEquals(0, count("updatePlatformRedundancyConfig"));
+  }
+
+  @Test
+  public void onlyChangedScalesAreSent() throws Exception {
+    workflow().process(false, false);
+    assertEquals(2, count("updatePlatformRedundancyConfig"));
+    RequestStats.reset();
+    profile.put("web_current", "3");
+    workflow().process(true, false);
+    assertEquals(1, count("updatePlatformRedundancyConfig"));
+  }
+
+  @Test
+  public void unchangedScalesAreNotCommitted() throws Exception {
+    BuildAllPlatforms workflow = workflow();
+    workflow.process(false, false);
+    RequestStats.reset();
+    assertFalse(workflow.updateScaling("dev"));
+    assertEquals(0, count("updatePlatformRedundancyConfig"));
+    assertEquals(0, count("commitEnvironment"));
+  }
+
+  @Test
+  public void deploymentsAreKeptByEnvironment() throws Exception {
+    BuildAllPlatforms workflow = workflow();
+    List<Deployment> deployments = workflow.process(false, false);
+    assertEquals(1, deployments.size());
+    assertEquals(Collections.singletonMap("dev", deployments.get(0).getDeploymentId()),
+        workflow.getDeployments());
+    assertEquals("complete",
+        workflow.getDeploymentState("dev", deployments.get(0).getDeploymentId()));
+  }
+
+  @Test
+  public void designIsCommittedOnce() throws Exception {
+    workflow().process(false, false);
+    assertEquals(1, count("commitDesign"));
+  }
+
+  @Test
+  public void designIsCommittedBeforeAWaveLinkingToPendingPlatforms() throws Exception {
+    // app links to web, which the first wave creates.
+    profile.put("app_order", "2");
+    workflow().process(false, false);
+    assertEquals(2, count("commitDesign"));
+  }
+
+  private BuildAllPlatforms workflow() throws IOException, OneOpsClientAPIException {
+    BooConfig config = new BooConfig(new File(basedir, "src/test/yaml/boo/mock.yaml"), profile);
+    OOInstance instance = new OOInstance();
+    instance.setAuthtoken(config.getYaml().getBoo().getApikey());
+    instance.setOrgname(config.getYaml().getBoo().getOrg());
+    instance.setEndpoint(config.getYaml().getBoo().getHost());
+    BuildAllPlatforms workflow = new BuildAllPlatforms(instance, config, null);
+    workflow.setSettleMillis(0);
+    return workflow;
+  }
+
+  private static long count(String operation) {
+    OperationStats stats = RequestStats.getOperations().get(operation);
+    return stats == null ? 0 : stats.getHistogram().getCount();
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.oneops.boo.exception.BooExitException;
+import com.oneops.boo.workflow.Cancellation;
+import com.oneops.boo.yaml.Constants;
+
+public class CancellationTest {
+
+  @Test
+  public void validateSleepEndsOnCancel() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger exit = new AtomicInteger(-1);
+    Thread sleeper = new Thread(() -> {
+      try {
+        cancellation.sleep(60000);
+        exit.set(Constants.EXIT_NORMAL);
+      } catch (BooExitException e) {
+        exit.set(e.getCode());
+      }
+    });
+    sleeper.start();
+    long start = System.currentTimeMillis();
+    cancellation.cancel();
+    sleeper.join(5000);
+    assertFalse(sleeper.isAlive());
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertEquals(Constants.EXIT_CANCELED, exit.get());
+  }
+
+  @Test
+  public void validateCancelInterruptsAttachedThreads() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger interrupted = new AtomicInteger();
+    Thread worker = new Thread(() -> {
+      try {
+        Thread.sleep(60000);
+      } catch (InterruptedException e) {
+        interrupted.incrementAndGet();
+      }
+    });
+    cancellation.attach(worker);
+    worker.start();
+    cancellation.cancel();
+    worker.join(5000);
+    assertEquals(1, interrupted.get());
+  }
+
+  @Test
+  public void validateNoCallAfterCancel() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    cancellation.begin();
+    cancellation.cancel();
+    assertFalse(cancellation.drain(10));
+    try {
+      cancellation.begin();
+      fail();
+    } catch (BooExitException e) {
+      assertEquals(Constants.EXIT_CANCELED, e.getCode());
+    }
+    new Thread(cancellation::end).start();
+    assertTrue(cancellation.drain(5000));
+
+    AtomicInteger cleanUps = new AtomicInteger();
+    cancellation.runExempt(() -> {
+      cancellation.begin();
+      cleanUps.incrementAndGet();
+      cancellation.end();
+    });
+    assertEquals(1, cleanUps.get());
+  }
+
+  @Test
+  public void validatePhaseBudget() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    cancellation.setBudget("deploy", 50);
+    try (Cancellation.Phase phase = cancellation.phase("create")) {
+      cancellation.sleep(100);
+    }
+    assertFalse(cancellation.isCanceled());
+    long start = System.currentTimeMillis();
+    try (Cancellation.Phase phase = cancellation.phase("deploy")) {
+      cancellation.sleep(60000);
+      fail();
+    } catch (BooExitException e) {
+      assertEquals(Constants.EXIT_TIMEOUT, e.getCode());
+    } finally {
+      cancellation.close();
+    }
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertEquals(Constants.EXIT_TIMEOUT, cancellation.getExitCode());
+  }
+
+  @Test
+  public void validateTimeout() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    cancellation.setBudget("wait", 60000);
+    cancellation.setTimeout(50);
+    try (Cancellation.Phase phase = cancellation.phase("wait")) {
+      cancellation.sleep(60000);
+      fail();
+    } catch (BooExitException e) {
+      assertEquals(Constants.EXIT_TIMEOUT, e.getCode());
+    } finally {
+      cancellation.close();
+    }
+    try {
+      cancellation.begin();
+      fail();
+    } catch (BooExitException e) {
+      assertEquals(Constants.EXIT_TIMEOUT, e.getCode());
+    }
+  }
+}
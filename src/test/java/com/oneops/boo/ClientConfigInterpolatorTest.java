@@ -49,6 +49,20 @@ public class ClientConfigInterpolatorTest {
         new HashMap<String, String>()));
   }
 
+  @Test
+  public void validateInliningRelativeFilesFromTheCommandDirectory() throws Exception {
+    BooConfigInterpolator interpolator = new BooConfigInterpolator();
+    String userDir = System.getProperty("user.dir");
+    // As the daemon runs a command from another directory
+    System.setProperty("user.dir", resource("").getAbsolutePath());
+    try {
+      assertEquals("f0", interpolator.interpolate("{{file(f0.txt)}}",
+          new HashMap<String, String>()));
+    } finally {
+      System.setProperty("user.dir", userDir);
+    }
+  }
+
   @Test
   public void validateBooConfigWithArrays() throws Exception {
     BooConfigInterpolator interpolator = new BooConfigInterpolator();
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import com.oneops.boo.workflow.DeploymentWatcher;
+import com.oneops.boo.yaml.Constants;
+
+public class DeploymentWatcherTest {
+
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+  private int watch(Map<String, Iterator<String>> states) throws InterruptedException {
+    DeploymentWatcher watcher = new DeploymentWatcher(
+        Arrays.asList(states.keySet().toArray(new String[0])),
+        env -> states.get(env).hasNext() ? states.get(env).next() : null,
+        new PrintStream(bytes, true), 1, 4);
+    return watcher.watch();
+  }
+
+  private String output() {
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void printsOnlyTransitions() throws InterruptedException {
+    Map<String, Iterator<String>> states = new HashMap<String, Iterator<String>>();
+    states.put("dev",
+        Arrays.asList("pending", "active", "active", "active", "complete").iterator());
+    assertEquals(Constants.EXIT_NORMAL, watch(states));
+    assertEquals(String.format("dev deployment status: pending%n"
+        + "dev deployment status: pending -> active%n"
+        + "dev deployment status: active -> complete%n"), output());
+  }
+
+  @Test
+  public void failedDeploymentFailsTheWatch() throws InterruptedException {
+    Map<String, Iterator<String>> states = new HashMap<String, Iterator<String>>();
+    states.put("dev", Arrays.asList("active", "complete").iterator());
+    states.put("prod", Arrays.asList("active", "active", "failed").iterator());
+    assertEquals(Constants.EXIT_DEPLOYMENT_FAILED, watch(states));
+  }
+
+  @Test
+  public void unreadableDeploymentEndsAsUnknown() throws InterruptedException {
+    Map<String, Iterator<String>> states = new HashMap<String, Iterator<String>>();
+    states.put("dev", Arrays.asList("complete").iterator());
+    states.put("qa", Arrays.<String>asList().iterator());
+    assertEquals(Constants.EXIT_CLIENT, watch(states));
+  }
+
+  @Test
+  public void retriesFailedDeployments() throws InterruptedException {
+    Iterator<String> states =
+        Arrays.asList("active", "failed", "failed", "active", "complete").iterator();
+    List<String> retried = new CopyOnWriteArrayList<String>();
+    DeploymentWatcher watcher = new DeploymentWatcher(Arrays.asList("dev"),
+        env -> states.hasNext() ? states.next() : null, new PrintStream(bytes, true), 1, 4);
+    watcher.setRetry(env -> retried.add(env), 2);
+    assertEquals(Constants.EXIT_NORMAL, watcher.watch());
+    assertEquals(Arrays.asList("dev"), retried);
+    assertEquals("complete", watcher.getStates().get("dev"));
+  }
+
+  @Test
+  public void timesOutRunningDeployments() throws InterruptedException {
+    DeploymentWatcher watcher = new DeploymentWatcher(Arrays.asList("dev", "qa"),
+        env -> "dev".equals(env) ? "complete" : "active", new PrintStream(bytes, true), 1, 4);
+    assertEquals(Constants.EXIT_TIMEOUT, watcher.watch(200));
+    assertEquals(DeploymentWatcher.TIMEOUT, watcher.getStates().get("qa"));
+    assertEquals("complete", watcher.getStates().get("dev"));
+    assertTrue(watcher.getDurations().get("qa") >= 200);
+  }
+
+  @Test
+  public void slowEnvironmentDelaysNeitherTheOthersNorTheTimeout() throws InterruptedException {
+    DeploymentWatcher watcher = new DeploymentWatcher(Arrays.asList("qa", "dev"), env -> {
+      if ("dev".equals(env)) {
+        return "complete";
+      }
+      try {
+        Thread.sleep(5000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "active";
+    }, new PrintStream(bytes, true), 1, 4);
+    long start = System.currentTimeMillis();
+    assertEquals(Constants.EXIT_TIMEOUT, watcher.watch(300));
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals("complete", watcher.getStates().get("dev"));
+    assertEquals(DeploymentWatcher.TIMEOUT, watcher.getStates().get("qa"));
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oneops.boo.utils.EventLogger;
+
+public class EventLoggerTest {
+
+  @Test
+  public void everyEventFromConcurrentThreads() throws InterruptedException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    EventLogger logger = new EventLogger(new PrintStream(out, true), new PrintStream(err, true), 16);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      int env = i;
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 100; j++) {
+          logger.log(j == 0, "env-%d step %d", env, j);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(logger.flush(5000));
+
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(8 * 99, lines.length);
+    for (String line : lines) {
+      assertTrue(line, line.matches("env-\\d step \\d+"));
+    }
+    assertEquals(8, new String(err.toByteArray(), StandardCharsets.UTF_8).split("\n").length);
+  }
+
+  @Test
+  public void jsonLines() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StringWriter json = new StringWriter();
+    EventLogger logger = new EventLogger(new PrintStream(out, true), System.err, 16);
+    logger.setConsole(false);
+    logger.setJson(json);
+    logger.log(false, "Creating platform %s ...%n", "tomcat");
+    logger.close();
+
+    assertEquals(0, out.size());
+    String[] lines = json.toString().split("\n");
+    assertEquals(1, lines.length);
+    Map<?, ?> event = new ObjectMapper().readValue(lines[0], Map.class);
+    assertEquals("info", event.get("level"));
+    assertEquals("Creating platform tomcat ...", event.get("message"));
+    assertEquals(Thread.currentThread().getName(), event.get("thread"));
+  }
+
+  @Test
+  public void quietFormatsNothing() {
+    AtomicInteger formatted = new AtomicInteger();
+    Object arg = new Object() {
+      @Override
+      public String toString() {
+        formatted.incrementAndGet();
+        return "arg";
+      }
+    };
+    EventLogger logger = new EventLogger(System.out, System.err, 16);
+    logger.setConsole(false);
+    logger.log(false, "%s", arg);
+    assertTrue(logger.flush(1000));
+    assertEquals(0, formatted.get());
+  }
+}
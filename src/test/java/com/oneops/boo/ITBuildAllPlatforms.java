@@ -98,6 +98,7 @@ public class ITBuildAllPlatforms extends BooTest {
 
     System.out.println("Platform variable update");
     assertTrue(build.updatePlatformVariables(true));
+    build.commitDesign();
 
     System.out.println("Get Ips");
     assertTrue(build.getIpsInternal("dev", "tomcat", "compute").size() > 0);
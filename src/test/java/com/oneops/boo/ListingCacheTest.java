@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.Filter;
+import com.oneops.boo.utils.ListingCache;
+
+public class ListingCacheTest {
+
+  private MockOneOpsServer server;
+  private File dir;
+  private final List<Integer> statuses = new CopyOnWriteArrayList<Integer>();
+  private final Filter wire = (request, response, ctx) -> {
+    com.jayway.restassured.response.Response fetched = ctx.next(request, response);
+    statuses.add(fetched.getStatusCode());
+    return fetched;
+  };
+
+  @Before
+  public void before() throws IOException {
+    server = new MockOneOpsServer();
+    dir = Files.createTempDirectory("boo-cache").toFile();
+  }
+
+  @After
+  public void after() {
+    server.close();
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void validateRevalidation() {
+    ListingCache cache = new ListingCache(0, ListingCache.DEFAULT_MAX_BYTES, null);
+    String platforms = server.getEndpoint() + "org/assemblies/a1/design/platforms";
+    assertEquals("[]", get(cache, platforms));
+    assertEquals("[]", get(cache, platforms));
+    assertEquals(Integer.valueOf(304), statuses.get(1));
+
+    RestAssured.given().filter(cache).filter(wire).body("{\"cms_dj_ci\":{\"ciName\":\"tomcat\"}}")
+        .post(platforms);
+    assertTrue(get(cache, platforms).contains("tomcat"));
+    assertEquals(Integer.valueOf(200), statuses.get(3));
+  }
+
+  @Test
+  public void validateDisk() {
+    String assemblies = server.getEndpoint() + "org/assemblies";
+    get(new ListingCache(0, ListingCache.DEFAULT_MAX_BYTES, dir), assemblies);
+    assertEquals(1, dir.listFiles().length);
+
+    assertEquals("[]", get(new ListingCache(0, ListingCache.DEFAULT_MAX_BYTES, dir), assemblies));
+    assertEquals(Integer.valueOf(304), statuses.get(1));
+  }
+
+  @Test
+  public void validateOwnerOnlyFiles() throws IOException {
+    File cacheDir = new File(dir, "cache");
+    get(new ListingCache(0, ListingCache.DEFAULT_MAX_BYTES, cacheDir),
+        server.getEndpoint() + "org/assemblies");
+    try {
+      for (File file : Arrays.asList(cacheDir, cacheDir.listFiles()[0])) {
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file.toPath());
+        assertTrue(file + " " + permissions, Collections.disjoint(permissions,
+            EnumSet.of(PosixFilePermission.GROUP_READ, PosixFilePermission.OTHERS_READ)));
+      }
+    } finally {
+      for (File file : cacheDir.listFiles()) {
+        file.delete();
+      }
+      cacheDir.delete();
+    }
+  }
+
+  @Test
+  public void validateDisabled() {
+    ListingCache cache = new ListingCache(0, ListingCache.DEFAULT_MAX_BYTES, null);
+    cache.setEnabled(false);
+    String assemblies = server.getEndpoint() + "org/assemblies";
+    get(cache, assemblies);
+    get(cache, assemblies);
+    assertEquals(Integer.valueOf(200), statuses.get(1));
+  }
+
+  @Test
+  public void validateDisabledPerThread() throws InterruptedException {
+    ListingCache cache = new ListingCache(0, ListingCache.DEFAULT_MAX_BYTES, null);
+    String assemblies = server.getEndpoint() + "org/assemblies";
+    Thread other = new Thread(() -> {
+      cache.setEnabled(false);
+      get(cache, assemblies);
+      get(cache, assemblies);
+    });
+    other.start();
+    other.join();
+    assertEquals("[200, 200]", statuses.toString());
+
+    get(cache, assemblies);
+    get(cache, assemblies);
+    assertEquals(Integer.valueOf(304), statuses.get(3));
+  }
+
+  private String get(ListingCache cache, String url) {
+    return RestAssured.given().filter(cache).filter(wire).get(url).asString();
+  }
+}
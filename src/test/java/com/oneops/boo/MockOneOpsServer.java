@@ -0,0 +1,612 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-memory stand-in for the OneOps REST API, so the workflow can run without a live OneOps.
+ *
+ * <p>
+ * Rather than hard-coding every route of the OneOps client, it keeps a tree of CIs by path: a
+ * POST to a collection (assemblies, platforms, components, environments, ...) creates a child
+ * named after the posted CI, GET lists a collection or returns a CI, PUT merges attributes and
+ * DELETE removes a CI with everything below it. POSTs to anything else (commit, deploy, disable,
+ * ...) are actions and answer with the CI they act on. Releases, deployments and procedures are
+ * created already complete, and clouds exist as soon as they are asked for.
+ *
+ * <p>
+ * Latency and failures can be injected per route, and every request is counted.
+ */
+public class MockOneOpsServer implements Closeable {
+
+  /** The path segments that name a collection of CIs. */
+  private static final Set<String> COLLECTIONS = new HashSet<String>(Arrays.asList("assemblies",
+      "platforms", "components", "variables", "attachments", "environments", "clouds",
+      "instances", "releases", "deployments", "procedures", "actions", "relays", "monitors",
+      "dependents", "requires"));
+
+  /** The JSON mapper. */
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** The CIs by path. */
+  private final NavigableMap<String, Map<String, Object>> store =
+      new ConcurrentSkipListMap<String, Map<String, Object>>();
+
+  /** The request counts by method and route. */
+  private final Map<String, AtomicInteger> requestCounts =
+      new ConcurrentHashMap<String, AtomicInteger>();
+
+  /** The injected latencies. */
+  private final List<Rule> latencies = new CopyOnWriteArrayList<Rule>();
+
+  /** The injected failures. */
+  private final List<Rule> failures = new CopyOnWriteArrayList<Rule>();
+
+  /** The total request count. */
+  private final AtomicInteger requestCount = new AtomicInteger();
+
+  /** The id sequence. */
+  private final AtomicLong ids = new AtomicLong(1000);
+
+  /** The failure dice, seeded so that runs are repeatable. */
+  private final Random random = new Random(42);
+
+  /** The server. */
+  private final HttpServer server;
+
+  /** The request threads. */
+  private final ExecutorService executor;
+
+  /**
+   * Starts a server on a free loopback port.
+   *
+   * @throws IOException if the port cannot be bound
+   */
+  public MockOneOpsServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * The endpoint to put in boo.oneops_host.
+   *
+   * @return the endpoint, with a trailing slash
+   */
+  public String getEndpoint() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+        + "/";
+  }
+
+  /**
+   * Delays every request.
+   *
+   * @param millis the delay in milliseconds
+   */
+  public void setLatency(long millis) {
+    setLatency(".*", ".*", millis);
+  }
+
+  /**
+   * Delays the matching requests. The first matching rule wins.
+   *
+   * @param method the HTTP method regex
+   * @param path the path regex
+   * @param millis the delay in milliseconds
+   */
+  public void setLatency(String method, String path, long millis) {
+    latencies.add(new Rule(method, path, millis, 1.0, -1));
+  }
+
+  /**
+   * Fails a share of the matching requests. The first matching rule that fires wins.
+   *
+   * @param method the HTTP method regex
+   * @param path the path regex
+   * @param status the HTTP status to answer with
+   * @param rate the share of requests to fail, from 0 to 1
+   */
+  public void failRequests(String method, String path, int status, double rate) {
+    failures.add(new Rule(method, path, status, rate, -1));
+  }
+
+  /**
+   * Fails the next matching requests.
+   *
+   * @param method the HTTP method regex
+   * @param path the path regex
+   * @param status the HTTP status to answer with
+   * @param times how many requests to fail
+   */
+  public void failNext(String method, String path, int status, int times) {
+    failures.add(new Rule(method, path, status, 1.0, times));
+  }
+
+  /**
+   * Removes the injected latencies and failures.
+   */
+  public void clearFaults() {
+    latencies.clear();
+    failures.clear();
+  }
+
+  /**
+   * Adds or replaces a CI.
+   *
+   * @param path the path of the CI
+   * @param ci the CI
+   */
+  public void put(String path, Map<String, Object> ci) {
+    store.put(normalize(path), new ConcurrentHashMap<String, Object>(ci));
+  }
+
+  /**
+   * Gets a CI.
+   *
+   * @param path the path of the CI
+   * @return the CI, or null
+   */
+  public Map<String, Object> get(String path) {
+    return store.get(normalize(path));
+  }
+
+  /**
+   * Lists the CIs of a collection.
+   *
+   * @param path the path of the collection
+   * @return the CIs
+   */
+  public List<Map<String, Object>> list(String path) {
+    String prefix = normalize(path) + "/";
+    List<Map<String, Object>> children = new ArrayList<Map<String, Object>>();
+    for (Map.Entry<String, Map<String, Object>> entry : store.tailMap(prefix).entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        break;
+      }
+      if (entry.getKey().indexOf('/', prefix.length()) < 0) {
+        children.add(entry.getValue());
+      }
+    }
+    return children;
+  }
+
+  /**
+   * The number of requests served since the start or the last reset.
+   *
+   * @return the request count
+   */
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * The request counts by method and route, e.g. "GET /org/assemblies/{}/design/platforms".
+   *
+   * @return the request counts
+   */
+  public Map<String, Integer> getRequestCounts() {
+    Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+    for (Map.Entry<String, AtomicInteger> entry : requestCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  /**
+   * Resets the request counts.
+   */
+  public void resetCounts() {
+    requestCount.set(0);
+    requestCounts.clear();
+  }
+
+  /**
+   * Removes every CI and resets the request counts.
+   */
+  public void reset() {
+    store.clear();
+    resetCounts();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String method = exchange.getRequestMethod();
+      String path = normalize(exchange.getRequestURI().getPath());
+      requestCount.incrementAndGet();
+      requestCounts.computeIfAbsent(method + " " + route(path), k -> new AtomicInteger())
+          .incrementAndGet();
+      Map<String, Object> body = readBody(exchange.getRequestBody());
+
+      Rule latency = match(latencies, method, path);
+      if (latency != null) {
+        TimeUnit.MILLISECONDS.sleep(latency.value);
+      }
+      Rule failure = match(failures, method, path);
+      if (failure != null) {
+        respond(exchange, (int) failure.value, error("Injected failure"));
+        return;
+      }
+
+      switch (method) {
+        case "GET":
+          doGet(exchange, path);
+          break;
+        case "POST":
+          doPost(exchange, path, body);
+          break;
+        case "PUT":
+          respond(exchange, 200, merge(path, body));
+          break;
+        case "DELETE":
+          doDelete(exchange, path);
+          break;
+        default:
+          respond(exchange, 405, error(method + " not supported"));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      respond(exchange, 503, error("Interrupted"));
+    } catch (RuntimeException e) {
+      respond(exchange, 500, error(String.valueOf(e.getMessage())));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void doGet(HttpExchange exchange, String path) throws IOException {
+    Map<String, Object> ci = store.get(path);
+    if (ci != null) {
+      respond(exchange, 200, ci);
+    } else if (COLLECTIONS.contains(lastSegment(path))) {
+      respondListing(exchange, list(path));
+    } else if (parentSegment(path).equals("releases") || parentSegment(path).equals("deployments")
+        || parentSegment(path).equals("procedures")) {
+      // latest, bom or an unknown id
+      Map<String, Object> latest = latest(parent(path));
+      if (latest == null) {
+        respond(exchange, 404, error(path + " not found"));
+      } else {
+        respond(exchange, 200, latest);
+      }
+    } else if (parentSegment(path).equals("clouds")) {
+      respond(exchange, 200, create(path, lastSegment(path), null));
+    } else {
+      respond(exchange, 404, error(path + " not found"));
+    }
+  }
+
+  private void doPost(HttpExchange exchange, String path, Map<String, Object> body)
+      throws IOException {
+    String collection = lastSegment(path);
+    if (COLLECTIONS.contains(collection)) {
+      String name = nameOf(body);
+      if (name == null) {
+        name = String.valueOf(ids.get() + 1);
+      }
+      String child = path + "/" + name;
+      if (store.containsKey(child) && !isVersioned(collection)) {
+        respond(exchange, 409, error(name + " already exists"));
+        return;
+      }
+      respond(exchange, 200, create(child, name, body));
+      return;
+    }
+    // An action on the CI it is posted to, or on its parent collection.
+    String target = parent(path);
+    if (collection.equals("commit") || collection.equals("deploy")) {
+      // Every commit opens a deployable release.
+      create(target + "/releases/" + (ids.get() + 1), null, null);
+    }
+    Map<String, Object> ci = store.get(target);
+    respond(exchange, 200, ci != null ? ci : create(target, lastSegment(target), body));
+  }
+
+  private void doDelete(HttpExchange exchange, String path) throws IOException {
+    Map<String, Object> ci = store.remove(path);
+    store.subMap(path + "/", path + "/\uffff").clear();
+    if (ci == null) {
+      respond(exchange, 404, error(path + " not found"));
+    } else {
+      respond(exchange, 200, ci);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> create(String path, String name, Map<String, Object> body) {
+    long id = ids.incrementAndGet();
+    String collection = parentSegment(path);
+    Map<String, Object> ci = new ConcurrentHashMap<String, Object>();
+    if (collection.equals("releases")) {
+      ci.put("releaseId", id);
+      ci.put("releaseState", "open");
+    } else if (collection.equals("deployments")) {
+      Map<String, Object> release = latest(parent(parent(path)) + "/releases");
+      ci.put("deploymentId", id);
+      ci.put("releaseId", release != null ? release.get("releaseId") : id);
+      ci.put("deploymentState", "complete");
+    } else if (collection.equals("procedures")) {
+      ci.put("procedureId", id);
+      ci.put("procedureState", "complete");
+    } else {
+      ci.put("ciId", id);
+      ci.put("ciName", name != null ? name : String.valueOf(id));
+      ci.put("ciClassName", collection);
+      ci.put("ciState", "default");
+      Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+      Map<String, Object> ciBody = ciOf(body);
+      if (ciBody != null && ciBody.get("ciAttributes") instanceof Map) {
+        attributes.putAll((Map<String, Object>) ciBody.get("ciAttributes"));
+      }
+      ci.put("ciAttributes", attributes);
+    }
+    store.put(path, ci);
+    return ci;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> merge(String path, Map<String, Object> body) {
+    Map<String, Object> ci = store.get(path);
+    if (ci == null) {
+      ci = create(path, lastSegment(path), body);
+    }
+    Map<String, Object> ciBody = ciOf(body);
+    if (ciBody != null && ciBody.get("ciAttributes") instanceof Map
+        && ci.get("ciAttributes") instanceof Map) {
+      ((Map<String, Object>) ci.get("ciAttributes"))
+          .putAll((Map<String, Object>) ciBody.get("ciAttributes"));
+    }
+    return ci;
+  }
+
+  private Map<String, Object> latest(String collection) {
+    String idKey = idKey(lastSegment(collection));
+    Map<String, Object> latest = null;
+    for (Map<String, Object> item : list(collection)) {
+      Object id = item.get(idKey);
+      if (id instanceof Number && (latest == null
+          || ((Number) id).longValue() > ((Number) latest.get(idKey)).longValue())) {
+        latest = item;
+      }
+    }
+    return latest;
+  }
+
+  private static String idKey(String collection) {
+    switch (collection) {
+      case "releases":
+        return "releaseId";
+      case "deployments":
+        return "deploymentId";
+      default:
+        return "procedureId";
+    }
+  }
+
+  private static boolean isVersioned(String collection) {
+    return collection.equals("releases") || collection.equals("deployments")
+        || collection.equals("procedures");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> ciOf(Map<String, Object> body) {
+    if (body == null) {
+      return null;
+    }
+    for (String key : new String[] {"cms_ci", "cms_dj_ci", "cmsCi"}) {
+      if (body.get(key) instanceof Map) {
+        return (Map<String, Object>) body.get(key);
+      }
+    }
+    return body;
+  }
+
+  private static String nameOf(Map<String, Object> body) {
+    Map<String, Object> ci = ciOf(body);
+    if (ci == null) {
+      return null;
+    }
+    for (String key : new String[] {"ciName", "name", "ci_name"}) {
+      if (ci.get(key) != null) {
+        return String.valueOf(ci.get(key));
+      }
+    }
+    return null;
+  }
+
+  private Rule match(List<Rule> rules, String method, String path) {
+    for (Rule rule : rules) {
+      if (rule.matches(method, path) && rule.fire(random)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> readBody(InputStream input) throws IOException {
+    byte[] bytes = readAll(input);
+    if (bytes.length == 0) {
+      return null;
+    }
+    try {
+      Object body = MAPPER.readValue(bytes, Object.class);
+      return body instanceof Map ? (Map<String, Object>) body : null;
+    } catch (IOException e) {
+      // Form posts and the like carry nothing the store needs.
+      return null;
+    }
+  }
+
+  private static byte[] readAll(InputStream input) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = input.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+    byte[] bytes = MAPPER.writeValueAsBytes(body);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(bytes);
+    out.close();
+  }
+
+  /**
+   * Sends a listing tagged with an ETag, or a 304 when the client already has it.
+   */
+  private static void respondListing(HttpExchange exchange, Object body) throws IOException {
+    byte[] bytes = MAPPER.writeValueAsBytes(body);
+    String etag = "\"" + Integer.toHexString(Arrays.hashCode(bytes)) + "\"";
+    exchange.getResponseHeaders().set("ETag", etag);
+    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      exchange.sendResponseHeaders(304, -1);
+      return;
+    }
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(bytes);
+    out.close();
+  }
+
+  private static Map<String, Object> error(String message) {
+    Map<String, Object> error = new LinkedHashMap<String, Object>();
+    error.put("errors", Arrays.asList(message));
+    return error;
+  }
+
+  /**
+   * Replaces the CI names in a path, so that requests can be counted per route.
+   */
+  static String route(String path) {
+    String[] segments = path.split("/");
+    StringBuilder route = new StringBuilder();
+    boolean named = false;
+    for (int i = 1; i < segments.length; i++) {
+      route.append('/').append(named ? "{}" : segments[i]);
+      named = COLLECTIONS.contains(segments[i]) && !named;
+    }
+    return route.length() == 0 ? "/" : route.toString();
+  }
+
+  private static String normalize(String path) {
+    String normalized = path.replaceAll("/+", "/");
+    if (normalized.length() > 1 && normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return normalized.startsWith("/") ? normalized : "/" + normalized;
+  }
+
+  private static String parent(String path) {
+    int slash = path.lastIndexOf('/');
+    return slash <= 0 ? "/" : path.substring(0, slash);
+  }
+
+  private static String lastSegment(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  private static String parentSegment(String path) {
+    return lastSegment(parent(path));
+  }
+
+  /**
+   * An injected latency or failure.
+   */
+  private static class Rule {
+
+    /** The method pattern. */
+    private final Pattern method;
+
+    /** The path pattern. */
+    private final Pattern path;
+
+    /** The latency in milliseconds, or the failure status. */
+    private final long value;
+
+    /** The share of matching requests the rule fires on. */
+    private final double rate;
+
+    /** How many more times the rule fires, or -1 for ever. */
+    private final AtomicInteger remaining;
+
+    Rule(String method, String path, long value, double rate, int times) {
+      this.method = Pattern.compile(method);
+      this.path = Pattern.compile(path);
+      this.value = value;
+      this.rate = rate;
+      this.remaining = new AtomicInteger(times);
+    }
+
+    boolean matches(String requestMethod, String requestPath) {
+      return method.matcher(requestMethod).matches() && path.matcher(requestPath).matches();
+    }
+
+    boolean fire(Random random) {
+      if (rate < 1.0) {
+        synchronized (random) {
+          if (random.nextDouble() >= rate) {
+            return false;
+          }
+        }
+      }
+      if (remaining.get() < 0) {
+        return true;
+      }
+      return remaining.getAndUpdate(n -> n > 0 ? n - 1 : n) > 0;
+    }
+  }
+}
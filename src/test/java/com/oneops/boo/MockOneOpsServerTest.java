@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MockOneOpsServerTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private MockOneOpsServer server;
+
+  @Before
+  public void before() throws IOException {
+    server = new MockOneOpsServer();
+  }
+
+  @After
+  public void after() {
+    server.close();
+  }
+
+  @Test
+  public void createListUpdateDelete() throws IOException {
+    String platforms = "org/assemblies/a1/design/platforms";
+    assertEquals(404, call("GET", "org/assemblies/a1", null).status);
+    assertEquals(200, call("POST", "org/assemblies", "{\"cms_ci\":{\"ciName\":\"a1\"}}").status);
+    assertEquals("[]", call("GET", platforms, null).body);
+
+    call("POST", platforms,
+        "{\"cms_dj_ci\":{\"ciName\":\"tomcat\",\"ciAttributes\":{\"pack\":\"oneops/tomcat\"}}}");
+    assertEquals(409, call("POST", platforms, "{\"cms_dj_ci\":{\"ciName\":\"tomcat\"}}").status);
+    List<?> list = mapper.readValue(call("GET", platforms, null).body, List.class);
+    assertEquals(1, list.size());
+
+    call("PUT", platforms + "/tomcat", "{\"cms_dj_ci\":{\"ciAttributes\":{\"major_version\":\"1\"}}}");
+    Map<?, ?> attributes = (Map<?, ?>) server.get(platforms + "/tomcat").get("ciAttributes");
+    assertEquals("oneops/tomcat", attributes.get("pack"));
+    assertEquals("1", attributes.get("major_version"));
+
+    assertEquals(200, call("DELETE", "org/assemblies/a1", null).status);
+    assertEquals(404, call("GET", platforms + "/tomcat", null).status);
+  }
+
+  @Test
+  public void commitAndDeploy() throws IOException {
+    String env = "org/assemblies/a1/transition/environments/dev";
+    call("POST", "org/assemblies/a1/transition/environments", "{\"cms_ci\":{\"ciName\":\"dev\"}}");
+    assertEquals(404, call("GET", env + "/releases/latest", null).status);
+
+    call("POST", env + "/commit", "{}");
+    Map<?, ?> release = mapper.readValue(call("GET", env + "/releases/latest", null).body, Map.class);
+    assertEquals("open", release.get("releaseState"));
+
+    call("POST", env + "/deployments", "{}");
+    Map<?, ?> deployment =
+        mapper.readValue(call("GET", env + "/deployments/latest", null).body, Map.class);
+    assertEquals("complete", deployment.get("deploymentState"));
+    assertEquals(release.get("releaseId"), deployment.get("releaseId"));
+
+    Map<?, ?> cloud = mapper.readValue(call("GET", "org/clouds/dev-cloud", null).body, Map.class);
+    assertEquals("dev-cloud", cloud.get("ciName"));
+  }
+
+  @Test
+  public void countRequestsByRoute() throws IOException {
+    call("GET", "org/assemblies/a1/design/platforms", null);
+    call("GET", "org/assemblies/a2/design/platforms", null);
+    call("GET", "org/assemblies/a2/design/platforms/p1/components/compute", null);
+    assertEquals(3, server.getRequestCount());
+    Map<String, Integer> counts = server.getRequestCounts();
+    assertEquals(Integer.valueOf(2), counts.get("GET /org/assemblies/{}/design/platforms"));
+    assertEquals(Integer.valueOf(1),
+        counts.get("GET /org/assemblies/{}/design/platforms/{}/components/{}"));
+    server.resetCounts();
+    assertEquals(0, server.getRequestCount());
+  }
+
+  @Test
+  public void injectFaults() throws IOException {
+    server.failNext("POST", ".*/commit", 500, 1);
+    assertEquals(500, call("POST", "org/assemblies/a1/design/commit", "{}").status);
+    assertEquals(200, call("POST", "org/assemblies/a1/design/commit", "{}").status);
+
+    server.setLatency("GET", ".*/slow", 100);
+    long start = System.nanoTime();
+    call("GET", "org/slow", null);
+    assertTrue(System.nanoTime() - start >= 100_000_000L);
+
+    server.clearFaults();
+    server.failRequests(".*", ".*", 503, 1.0);
+    assertEquals(503, call("GET", "org/assemblies", null).status);
+  }
+
+  private Response call(String method, String path, String body) throws IOException {
+    HttpURLConnection connection =
+        (HttpURLConnection) new URL(server.getEndpoint() + path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    InputStream in =
+        response.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while (in != null && (read = in.read(buffer)) > 0) {
+      bytes.write(buffer, 0, read);
+    }
+    response.body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    connection.disconnect();
+    return response;
+  }
+
+  private static class Response {
+    int status;
+    String body;
+  }
+}
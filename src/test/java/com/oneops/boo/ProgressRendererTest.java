@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oneops.boo.utils.ProgressRenderer;
+import com.oneops.boo.utils.ProgressRenderer.Task;
+
+public class ProgressRendererTest {
+
+  @Test
+  public void plainLinesFromConcurrentTasks() throws InterruptedException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ProgressRenderer renderer = new ProgressRenderer(new PrintStream(bytes, true), false, false);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      Task task = renderer.task("env-" + i, 3);
+      threads.add(new Thread(() -> {
+        for (String step : new String[] {"create", "update", "deploy"}) {
+          task.step(step);
+          task.advance();
+        }
+        task.finish("done");
+      }));
+    }
+    renderer.start();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    renderer.stop();
+
+    String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals(8 * 4, lines.length);
+    for (String line : lines) {
+      assertTrue(line, line.matches("env-\\d (create|update|deploy|done) \\d/3"));
+    }
+    for (Task task : renderer.getTasks()) {
+      assertEquals(3, task.getDone());
+      assertEquals("done", task.getStep());
+    }
+  }
+
+  @Test
+  public void statusLineOnTerminal() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ProgressRenderer renderer = new ProgressRenderer(new PrintStream(bytes, true), true, false);
+    Task design = renderer.task("assembly", 2);
+    Task env = renderer.task("dev", 4);
+    design.step("platforms");
+    design.advance();
+    env.step("create");
+    assertEquals("[assembly platforms 1/2]  [dev create 0/4]", renderer.statusLine());
+
+    renderer.start();
+    renderer.stop();
+    String output = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(output, output.contains("\r\033[2K[assembly platforms 1/2]  [dev create 0/4]"));
+    assertTrue(output.endsWith(System.lineSeparator()));
+  }
+
+  @Test
+  public void quietPrintsNothing() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ProgressRenderer renderer = new ProgressRenderer(new PrintStream(bytes, true), false, true);
+    renderer.start();
+    renderer.task("dev", 1).finish("done");
+    renderer.stop();
+    assertEquals(0, bytes.size());
+  }
+
+  @Test
+  public void stepsNeverGoBackwards() {
+    ProgressRenderer renderer =
+        new ProgressRenderer(new PrintStream(new ByteArrayOutputStream()), false, true);
+    Task task = renderer.task("dev", 2);
+    task.advance();
+    task.advance();
+    task.advance();
+    assertEquals(2, task.getDone());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.oneops.api.exception.OneOpsClientAPIException;
+import com.oneops.boo.workflow.ReadCache;
+
+public class ReadCacheTest {
+
+  @Test
+  public void validateConcurrentReadsShareOneCall() throws Exception {
+    ReadCache cache = new ReadCache(60000);
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> cache.get("getPlatform web", () -> {
+          calls.incrementAndGet();
+          Uninterruptibles.awaitUninterruptibly(release, 5, TimeUnit.SECONDS);
+          return "web";
+        })));
+      }
+      Thread.sleep(200);
+      release.countDown();
+      for (Future<String> result : results) {
+        assertEquals("web", result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, calls.get());
+    assertEquals("web", cache.get("getPlatform web", () -> "again"));
+    assertEquals("db", cache.get("getPlatform db", () -> "db"));
+  }
+
+  @Test
+  public void validateWriteAndExpiry() throws Exception {
+    ReadCache cache = new ReadCache(60000);
+    assertEquals("old", cache.get("getPlatform web", () -> "old"));
+    cache.invalidate();
+    assertEquals("new", cache.get("getPlatform web", () -> "new"));
+
+    ReadCache expiring = new ReadCache(1);
+    assertEquals("old", expiring.get("getCloud dal", () -> "old"));
+    Thread.sleep(20);
+    assertEquals("new", expiring.get("getCloud dal", () -> "new"));
+  }
+
+  @Test
+  public void validateFailureIsNotKept() throws Exception {
+    ReadCache cache = new ReadCache(60000);
+    try {
+      cache.get("getAssembly a", () -> {
+        throw new OneOpsClientAPIException("not found");
+      });
+      fail();
+    } catch (OneOpsClientAPIException e) {
+      assertEquals("not found", e.getMessage());
+    }
+    assertEquals("a", cache.get("getAssembly a", () -> "a"));
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oneops.boo.stats.LatencyHistogram;
+import com.oneops.boo.stats.RequestStats;
+
+public class RequestStatsTest {
+
+  @After
+  public void after() {
+    RequestStats.reset();
+  }
+
+  @Test
+  public void percentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMax());
+    assertWithin(500000, histogram.getPercentile(50));
+    assertWithin(950000, histogram.getPercentile(95));
+    assertWithin(990000, histogram.getPercentile(99));
+    assertEquals(1000000, histogram.getPercentile(100));
+    assertEquals(0, new LatencyHistogram().getPercentile(50));
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(3);
+    histogram.record(7);
+    assertEquals(3, histogram.getPercentile(50));
+    assertEquals(7, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void recordPerOperation() throws IOException {
+    RequestStats.record("createPlatform", TimeUnit.MILLISECONDS.toNanos(20), false);
+    RequestStats.record("createPlatform", TimeUnit.MILLISECONDS.toNanos(40), true);
+    RequestStats.record("deploy", TimeUnit.MILLISECONDS.toNanos(5), false);
+
+    Map<String, RequestStats.OperationStats> operations = RequestStats.getOperations();
+    assertEquals(2, operations.size());
+    assertEquals(2, operations.get("createPlatform").getHistogram().getCount());
+    assertEquals(1, operations.get("createPlatform").getErrors());
+
+    List<String> summary = RequestStats.summary();
+    assertEquals(4, summary.size());
+    assertTrue(summary.get(1).startsWith("createPlatform"));
+    assertTrue(summary.get(3).startsWith("All"));
+
+    File file = File.createTempFile("boo-stats", ".json");
+    file.deleteOnExit();
+    RequestStats.writeJson(file);
+    Map<?, ?> json = new ObjectMapper().readValue(file, Map.class);
+    Map<?, ?> deploy = (Map<?, ?>) ((Map<?, ?>) json.get("operations")).get("deploy");
+    assertEquals(1, deploy.get("count"));
+    assertEquals(0, deploy.get("errors"));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual + " is not close to " + expected,
+        actual >= expected && actual <= expected * 1.125);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oneops.boo.yaml.RolloutWaveBean;
+import com.oneops.boo.yaml.Yaml;
+import com.oneops.boo.yaml.helper.RolloutWaveBeanHelper;
+
+public class RolloutWaveBeanHelperTest {
+
+  private static final String ENVIRONMENTS = "environments:\n"
+      + "  qa:\n"
+      + "    clouds:\n"
+      + "      dev-cloud0:\n"
+      + "        priority: '1'\n"
+      + "  prod-east:\n"
+      + "    clouds:\n"
+      + "      prod-cloud0:\n"
+      + "        priority: '1'\n"
+      + "  prod-west:\n"
+      + "    clouds:\n"
+      + "      prod-cloud1:\n"
+      + "        priority: '1'\n"
+      + "  perf:\n"
+      + "    clouds:\n"
+      + "      dev-cloud0:\n"
+      + "        priority: '1'\n";
+
+  private Yaml read(String yaml) throws Exception {
+    return new BooYamlReader().read(new StringReader(yaml));
+  }
+
+  @Test
+  public void withoutRolloutAllEnvironmentsAreOneWave() throws Exception {
+    List<RolloutWaveBean> waves = read(ENVIRONMENTS).getRolloutWaves();
+    assertEquals(1, waves.size());
+    assertEquals(RolloutWaveBeanHelper.REST, waves.get(0).getName());
+    assertEquals(4, waves.get(0).getEnvironments().size());
+    assertEquals(0, waves.get(0).getParallel());
+  }
+
+  @Test
+  public void wavesKeepTheirOrderAndTheRestComesLast() throws Exception {
+    List<RolloutWaveBean> waves = read(ENVIRONMENTS
+        + "rollout:\n"
+        + "  canary:\n"
+        + "    environments: qa\n"
+        + "    gate:\n"
+        + "      platform: tomcat\n"
+        + "      component: tomcat\n"
+        + "      action: healthcheck\n"
+        + "  production:\n"
+        + "    environments: [prod-west, prod-east]\n"
+        + "    parallel: 1\n").getRolloutWaves();
+    assertEquals(3, waves.size());
+    assertEquals("canary", waves.get(0).getName());
+    assertEquals(Arrays.asList("qa"), waves.get(0).getEnvironments());
+    assertTrue(waves.get(0).hasGateProcedure());
+    assertEquals("healthcheck", waves.get(0).getGateAction());
+    assertEquals("", waves.get(0).getGateArguments());
+    assertEquals(Arrays.asList("prod-west", "prod-east"), waves.get(1).getEnvironments());
+    assertEquals(1, waves.get(1).getParallel());
+    assertFalse(waves.get(1).hasGateProcedure());
+    assertEquals(Arrays.asList("perf"), waves.get(2).getEnvironments());
+  }
+}
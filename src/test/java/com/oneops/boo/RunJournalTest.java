@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oneops.boo.state.RunJournal;
+
+public class RunJournalTest {
+
+  private File dir;
+
+  @Before
+  public void beforeTests() throws Exception {
+    dir = Files.createTempDirectory("boo-journal").toFile();
+  }
+
+  @Test
+  public void validateResume() {
+    RunJournal failed = new RunJournal(dir);
+    failed.start("hash", false);
+    failed.record("platform web");
+    failed.record("design");
+    failed.finish(false);
+
+    RunJournal resumed = new RunJournal(dir);
+    resumed.start("hash", true);
+    assertTrue(resumed.isResumed());
+    assertEquals(2, resumed.size());
+    assertTrue(resumed.isDone("platform web"));
+    assertFalse(resumed.isDone("env dev committed"));
+    resumed.record("env dev committed");
+    resumed.finish(false);
+
+    RunJournal again = new RunJournal(dir);
+    again.start("hash", true);
+    assertEquals(3, again.size());
+    assertTrue(again.isDone("env dev committed"));
+    again.finish(true);
+    assertFalse(new File(dir, "journal.log").exists());
+  }
+
+  @Test
+  public void validateStartOver() {
+    RunJournal failed = new RunJournal(dir);
+    failed.start("hash", false);
+    failed.record("design");
+    failed.finish(false);
+
+    RunJournal changed = new RunJournal(dir);
+    changed.start("other-hash", true);
+    assertFalse(changed.isResumed());
+    assertFalse(changed.isDone("design"));
+    changed.finish(false);
+
+    RunJournal fresh = new RunJournal(dir);
+    fresh.start("hash", false);
+    assertFalse(fresh.isResumed());
+    assertEquals(0, fresh.size());
+    fresh.finish(false);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The training run of the appcds profile: runs 'boo -c' from the executable jar against a
+ * {@link MockOneOpsServer} and archives the classes it loaded, see -XX:ArchiveClassesAtExit.
+ * Arguments: the uber jar and the archive to write.
+ */
+public final class StartupTraining {
+
+  /** The template of the training run. */
+  private static final String TEMPLATE = "boo:\n"
+      + "  oneops_host: '{{host}}'\n"
+      + "  organization: '{{organization}}'\n"
+      + "  api_key: '{{api_key}}'\n"
+      + "  email: '{{email}}'\n"
+      + "assembly:\n"
+      + "  name: 'training'\n"
+      + "  auto_gen: false\n"
+      + "platforms:\n"
+      + "  tomcat:\n"
+      + "    pack: oneops/tomcat\n"
+      + "    pack_version: '1'\n"
+      + "    variables:\n"
+      + "      owner: '{{email}}'\n"
+      + "    components:\n"
+      + "      compute:\n"
+      + "        size: M\n"
+      + "      user:\n"
+      + "        user-boo:\n"
+      + "          username: 'boo'\n"
+      + "environments:\n"
+      + "  dev:\n"
+      + "    profile: 'DEV'\n"
+      + "    availability: 'single'\n"
+      + "    clouds:\n"
+      + "      dev-cloud0:\n"
+      + "        priority: '1'\n"
+      + "        dpmt_order: '1'\n"
+      + "        pct_scale: '100'\n";
+
+  private StartupTraining() {}
+
+  /**
+   * Runs the training.
+   *
+   * @param args the uber jar and the archive to write
+   * @throws Exception if the training run fails
+   */
+  public static void main(String[] args) throws Exception {
+    File jar = new File(args[0]);
+    File archive = new File(args[1]);
+    File home = Files.createTempDirectory("boo-training").toFile();
+    try (MockOneOpsServer server = new MockOneOpsServer()) {
+      File template = new File(home, "boo.yaml");
+      write(template, TEMPLATE);
+      write(new File(home, ".boo/config"), "[default]\n"
+          + "host=" + server.getEndpoint() + "\n"
+          + "organization=training\n"
+          + "api_key=training\n"
+          + "email=boo@localhost\n");
+      Files.deleteIfExists(archive.toPath());
+      Process boo = new ProcessBuilder(
+          new File(System.getProperty("java.home"), "bin/java").getAbsolutePath(),
+          "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath(), "-Duser.home=" + home,
+          "-jar", jar.getAbsolutePath(), "-f", template.getAbsolutePath(), "-c", "--quiet")
+              .directory(home).inheritIO().start();
+      int exit = boo.waitFor();
+      if (exit != 0 || !archive.isFile()) {
+        throw new IllegalStateException("The training run failed with exit code " + exit);
+      }
+    } finally {
+      FileUtils.deleteDirectory(home);
+    }
+  }
+
+  private static void write(File file, String content) throws IOException {
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileReader;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oneops.boo.state.AppliedState;
+import com.oneops.boo.state.AppliedState.PlatformState;
+import com.oneops.boo.state.StateStore;
+import com.oneops.boo.yaml.EnvironmentBean;
+import com.oneops.boo.yaml.PlatformBean;
+import com.oneops.boo.yaml.ScaleBean;
+import com.oneops.boo.yaml.Yaml;
+import com.oneops.boo.yaml.helper.ContentHashHelper;
+import com.oneops.boo.yaml.helper.EnvironmentBeanHelper;
+
+public class StateStoreTest {
+
+  private String basedir;
+  private File root;
+  private StateStore store;
+  private byte[] key;
+
+  @Before
+  public void beforeTests() throws Exception {
+    basedir = System.getProperty("basedir", new File("").getAbsolutePath());
+    root = Files.createTempDirectory("boo-state").toFile();
+    store = new StateStore(root, "org", "assembly-name");
+    key = store.getKey();
+  }
+
+  @Test
+  public void validateRoundTrip() throws Exception {
+    AppliedState desired = AppliedState.of(read(), key);
+    AppliedState applied = store.load();
+    assertFalse(applied.isPlatformUnchanged(desired, "platform-0"));
+    assertFalse(applied.isEnvironmentUnchanged(desired, "environment-0"));
+
+    applied.putPlatforms(desired);
+    applied.putEnvironment(desired, "environment-0");
+    store.save(applied);
+
+    AppliedState reloaded = store.load();
+    assertTrue(reloaded.isPlatformUnchanged(desired, "platform-0"));
+    assertTrue(reloaded.isPlatformUnchanged(desired, "platform-1"));
+    assertTrue(reloaded.isEnvironmentUnchanged(desired, "environment-0"));
+    assertFalse(reloaded.isEnvironmentUnchanged(desired, "environment-1"));
+
+    store.clear();
+    assertFalse(store.load().isPlatformUnchanged(desired, "platform-0"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void validateComponentChangeIsDetected() throws Exception {
+    AppliedState applied = AppliedState.of(read(), key);
+    Yaml yaml = read();
+    Map<String, Object> component =
+        (Map<String, Object>) yaml.getPlatformsList().get(0).getComponents().get("component-0");
+    component.put("config-0", "changed");
+    AppliedState desired = AppliedState.of(yaml, key);
+    assertFalse(applied.isPlatformUnchanged(desired, "platform-0"));
+    assertTrue(applied.isPlatformUnchanged(desired, "platform-1"));
+  }
+
+  @Test
+  public void validateScaleChangeIsDetected() throws Exception {
+    Yaml yaml = read();
+    EnvironmentBean env = yaml.getEnvironmentList().get(0);
+    List<ScaleBean> scales = EnvironmentBeanHelper.getScales(yaml.getScales(), env);
+    ScaleBean scale = scales.get(scales.size() - 1);
+    assertEquals("platform-1", scale.getPlatform());
+    assertEquals(1, scale.getCurrent());
+
+    AppliedState desired = AppliedState.of(yaml, key);
+    AppliedState applied = new AppliedState();
+    assertFalse(applied.isScaleUnchanged(desired, env.getEnvName(), scale));
+    applied.putEnvironment(desired, env.getEnvName());
+    assertTrue(applied.isScaleUnchanged(desired, env.getEnvName(), scale));
+
+    ScaleBean resized = new ScaleBean.ScalBeanBuilder().setPlatform("platform-1")
+        .setComponent(scale.getComponent()).setCurrent("2").setMin("1").setMax("3").build();
+    assertFalse(applied.isScaleUnchanged(desired, env.getEnvName(), resized));
+  }
+
+  @Test
+  public void validateScalesOnlyAreRecorded() throws Exception {
+    Yaml yaml = read();
+    EnvironmentBean env = yaml.getEnvironmentList().get(0);
+    List<ScaleBean> scales = EnvironmentBeanHelper.getScales(yaml.getScales(), env);
+    AppliedState desired = AppliedState.of(yaml, key);
+    AppliedState applied = new AppliedState();
+    applied.putScales(desired, env.getEnvName());
+    assertTrue(applied.isScaleUnchanged(desired, env.getEnvName(), scales.get(0)));
+    assertFalse(applied.isEnvironmentUnchanged(desired, env.getEnvName()));
+  }
+
+  @Test
+  public void validateKeyedHashes() throws Exception {
+    assertEquals(32, key.length);
+    assertArrayEquals(key, new StateStore(root, "org", "other").getKey());
+    assertFalse(Arrays.equals(key, new StateStore(
+        Files.createTempDirectory("boo-state").toFile(), "org", "assembly-name").getKey()));
+
+    PlatformBean platform = new PlatformBean.PlatformBeanBuilder("oneops/tomcat", "1")
+        .setSecureVariables(Collections.singletonMap("password", "secret")).build();
+    PlatformState state = PlatformState.of(platform, key);
+    assertFalse(state.getSecureVariables()
+        .equals(ContentHashHelper.hash(platform.getSecureVariables())));
+    assertFalse(state.getFingerprint().equals(platform.getFingerprint()));
+  }
+
+  @Test
+  public void validateOwnerOnlyFiles() throws Exception {
+    AppliedState applied = new AppliedState();
+    applied.putPlatforms(AppliedState.of(read(), key));
+    store.save(applied);
+    for (File file : Arrays.asList(new File(root, ".key"), store.getDirectory(),
+        new File(store.getDirectory(), "state.json"))) {
+      Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file.toPath());
+      assertTrue(file + " " + permissions, Collections.disjoint(permissions,
+          EnumSet.of(PosixFilePermission.GROUP_READ, PosixFilePermission.OTHERS_READ)));
+    }
+  }
+
+  private Yaml read() throws Exception {
+    try (FileReader reader = new FileReader(new File(basedir, "src/test/yaml/boo/assembly.yaml"))) {
+      return new BooYamlReader().read(reader);
+    }
+  }
+}
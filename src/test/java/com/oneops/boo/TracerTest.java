@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Walmart, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.oneops.boo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oneops.boo.stats.Tracer;
+import com.oneops.boo.stats.Tracer.Span;
+
+public class TracerTest {
+
+  @Before
+  public void before() {
+    Tracer.setEnabled(true);
+  }
+
+  @After
+  public void after() {
+    Tracer.setEnabled(false);
+    Tracer.reset();
+  }
+
+  @Test
+  public void recordNothingWhenDisabled() {
+    Tracer.setEnabled(false);
+    try (Span root = Tracer.start("root")) {
+      Tracer.request("getPlatform").close();
+      Tracer.start("child", root).close();
+    }
+    assertTrue(Tracer.getSpans().isEmpty());
+  }
+
+  @Test
+  public void nestThroughTheCurrentSpan() {
+    try (Span root = Tracer.start("root")) {
+      try (Span child = Tracer.start("child")) {
+        try (Span request = Tracer.request("getPlatform")) {
+          assertSame(child, request.getParent());
+        }
+        assertSame(root, child.getParent());
+      }
+      try (Span sibling = Tracer.start("sibling")) {
+        assertSame(root, sibling.getParent());
+      }
+    }
+    try (Span next = Tracer.start("next")) {
+      assertEquals(null, next.getParent());
+    }
+  }
+
+  @Test
+  public void criticalPathFollowsTheLongestBranch() throws InterruptedException {
+    Span root = Tracer.start("root");
+    Thread fast = new Thread(() -> {
+      try (Span span = Tracer.start("env fast", root)) {
+        sleep(10);
+      }
+    });
+    Thread slow = new Thread(() -> {
+      try (Span span = Tracer.start("env slow", root)) {
+        try (Span deploy = Tracer.start("deploy")) {
+          sleep(60);
+        }
+      }
+    });
+    fast.start();
+    slow.start();
+    fast.join();
+    slow.join();
+    root.close();
+
+    List<String> names = new ArrayList<String>();
+    for (Span span : Tracer.criticalPath(root)) {
+      names.add(span.getName());
+    }
+    assertEquals("[root, env slow, deploy]", names.toString());
+
+    List<String> report = Tracer.report();
+    assertEquals(5, report.size());
+    assertTrue(report.get(1).startsWith("* root"));
+    boolean fastMarked = false;
+    for (String line : report) {
+      fastMarked |= line.contains("env fast") && line.startsWith("*");
+    }
+    assertTrue(!fastMarked);
+  }
+
+  @Test
+  public void writeChromeTrace() throws IOException {
+    try (Span root = Tracer.start("root")) {
+      Tracer.request("deploy").close();
+    }
+    File file = File.createTempFile("boo-trace", ".json");
+    file.deleteOnExit();
+    Tracer.writeChromeTrace(file);
+    Map<?, ?> trace = new ObjectMapper().readValue(file, Map.class);
+    List<?> events = (List<?>) trace.get("traceEvents");
+    assertEquals(2, events.size());
+    Map<?, ?> request = (Map<?, ?>) events.get(1);
+    assertEquals("deploy", request.get("name"));
+    assertEquals("request", request.get("cat"));
+    assertEquals("X", request.get("ph"));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}